@@ -1,32 +1,63 @@
 package com.redeagle.chestlogger;
 
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtString;
 import net.minecraft.util.math.BlockPos;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntConsumer;
 
-public class ChestAccessLog {
-    private final String playerName;
+public class ChestAccessLog implements LogRecord {
+    private static final int MAX_COMPONENT_TEXT = 80; // Longer component data is cut off in chat
+
+    // Strings are held as SymbolTable ids so thousands of records share one copy of each name
+    private final int playerId;
+    private final int playerUuidId; // -1 for records migrated from before UUIDs were logged
     private final BlockPos position;
-    private final String dimension;
+    private final int dimensionId;
     private final long timestamp;
-    private final List<String> itemsAdded;
-    private final List<String> itemsRemoved;
+    private final int[] itemIds;
+    private final int[] itemCounts; // Positive counts went into the container, negative ones were taken out
+    private final int[] componentIds; // ComponentTable id per item, 0 for plain items; null if all are plain
+
+    public ChestAccessLog(int playerId, int playerUuidId, BlockPos position, int dimensionId, long timestamp,
+                          int[] itemIds, int[] itemCounts, int[] componentIds) {
+        this.playerId = playerId;
+        this.playerUuidId = playerUuidId;
+        this.position = position;
+        this.dimensionId = dimensionId;
+        this.timestamp = timestamp;
+        this.itemIds = itemIds;
+        this.itemCounts = itemCounts;
+        this.componentIds = componentIds;
+    }
 
     public ChestAccessLog(String playerName, BlockPos position, String dimension, long timestamp,
                           List<String> itemsAdded, List<String> itemsRemoved) {
-        this.playerName = playerName;
+        this.playerId = SymbolTable.intern(playerName);
+        this.playerUuidId = -1; // The text format only had the name
         this.position = position;
-        this.dimension = dimension;
+        this.dimensionId = SymbolTable.intern(dimension);
         this.timestamp = timestamp;
-        this.itemsAdded = new ArrayList<>(itemsAdded);
-        this.itemsRemoved = new ArrayList<>(itemsRemoved);
+        this.itemIds = new int[itemsAdded.size() + itemsRemoved.size()];
+        this.itemCounts = new int[itemIds.length];
+        this.componentIds = null; // Text entries never carried component data
+
+        int i = 0;
+        for (String item : itemsAdded) {
+            itemIds[i] = SymbolTable.intern(getItemId(item));
+            itemCounts[i++] = getItemCount(item);
+        }
+        for (String item : itemsRemoved) {
+            itemIds[i] = SymbolTable.intern(getItemId(item));
+            itemCounts[i++] = -getItemCount(item);
+        }
     }
 
     public static ChestAccessLog fromNBT(NbtCompound tag) {
@@ -60,52 +91,203 @@ public class ChestAccessLog {
         return new ChestAccessLog(playerName, position, dimension, timestamp, itemsAdded, itemsRemoved);
     }
 
-    public NbtCompound toNBT() {
-        NbtCompound tag = new NbtCompound();
-        tag.putString("PlayerName", playerName);
-        tag.putInt("X", position.getX());
-        tag.putInt("Y", position.getY());
-        tag.putInt("Z", position.getZ());
-        tag.putString("Dimension", dimension);
-        tag.putLong("Timestamp", timestamp);
+    public static ChestAccessLog readCompact(ByteBuffer input, LogDictionary dictionary) {
+        long timestamp = input.getLong();
+        BlockPos position = new BlockPos(input.getInt(), input.getInt(), input.getInt());
+        int playerId = dictionary.getSymbolId(readVarInt(input));
+        int playerUuidRef = readVarInt(input);
+        int playerUuidId = playerUuidRef != 0 ? dictionary.getSymbolId(playerUuidRef - 1) : -1;
+        int dimensionId = dictionary.getSymbolId(readVarInt(input));
 
-        NbtList addedList = new NbtList();
-        for (String item : itemsAdded) {
-            addedList.add(NbtString.of(item));
+        int deltaCount = readVarInt(input);
+        int[] itemIds = new int[deltaCount];
+        int[] itemCounts = new int[deltaCount];
+        int[] componentIds = null;
+        for (int i = 0; i < deltaCount; i++) {
+            itemIds[i] = dictionary.getSymbolId(readVarInt(input));
+            int zigzag = readVarInt(input);
+            itemCounts[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+
+            int componentsRef = readVarInt(input);
+            if (componentsRef != 0) {
+                if (componentIds == null) {
+                    componentIds = new int[deltaCount];
+                }
+                componentIds[i] = dictionary.getComponentsId(componentsRef - 1);
+            }
         }
-        tag.put("ItemsAdded", addedList);
 
-        NbtList removedList = new NbtList();
-        for (String item : itemsRemoved) {
-            removedList.add(NbtString.of(item));
+        return new ChestAccessLog(playerId, playerUuidId, position, dimensionId, timestamp, itemIds, itemCounts, componentIds);
+    }
+
+    public void writeCompact(DataOutput output, LogDictionary dictionary) throws IOException {
+        // Fixed-size fields first so readers can inspect them without decoding the rest;
+        // every symbol and component blob must already be in the segment's dictionary
+        output.writeLong(timestamp);
+        output.writeInt(position.getX());
+        output.writeInt(position.getY());
+        output.writeInt(position.getZ());
+        writeVarInt(output, dictionary.getLocalId(playerId));
+        writeVarInt(output, playerUuidId >= 0 ? dictionary.getLocalId(playerUuidId) + 1 : 0);
+        writeVarInt(output, dictionary.getLocalId(dimensionId));
+
+        writeVarInt(output, itemIds.length);
+        for (int i = 0; i < itemIds.length; i++) {
+            int count = itemCounts[i];
+            writeVarInt(output, dictionary.getLocalId(itemIds[i]));
+            writeVarInt(output, (count << 1) ^ (count >> 31)); // Zigzag, small negative counts stay short
+            int componentsId = getItemDeltaComponentsId(i);
+            writeVarInt(output, componentsId != 0 ? dictionary.getComponentsLocalId(componentsId) + 1 : 0);
         }
-        tag.put("ItemsRemoved", removedList);
+    }
 
-        return tag;
+    public void forEachSymbolId(IntConsumer consumer) {
+        consumer.accept(playerId);
+        if (playerUuidId >= 0) {
+            consumer.accept(playerUuidId);
+        }
+        consumer.accept(dimensionId);
+        for (int itemId : itemIds) {
+            consumer.accept(itemId);
+        }
+    }
+
+    public void forEachComponentsId(IntConsumer consumer) {
+        if (componentIds != null) {
+            for (int componentsId : componentIds) {
+                if (componentsId != 0) {
+                    consumer.accept(componentsId);
+                }
+            }
+        }
+    }
+
+    private static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = input.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("VarInt too long");
     }
 
     public String getPlayerName() {
-        return playerName;
+        return SymbolTable.get(playerId);
+    }
+
+    @Override
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    @Override
+    public int getPlayerUuidId() {
+        return playerUuidId;
+    }
+
+    public String getPlayerUuid() {
+        return playerUuidId >= 0 ? SymbolTable.get(playerUuidId) : null;
     }
 
     public BlockPos getPosition() {
         return position;
     }
 
+    @Override
+    public long getPackedPos() {
+        return position.asLong();
+    }
+
     public String getDimension() {
-        return dimension;
+        return SymbolTable.get(dimensionId);
     }
 
+    @Override
+    public int getDimensionId() {
+        return dimensionId;
+    }
+
+    @Override
     public long getTimestamp() {
         return timestamp;
     }
 
+    @Override
+    public int getItemDeltaSize() {
+        return itemIds.length;
+    }
+
+    @Override
+    public int getItemDeltaId(int index) {
+        return itemIds[index];
+    }
+
+    @Override
+    public int getItemDeltaCount(int index) {
+        return itemCounts[index];
+    }
+
+    public int getItemDeltaComponentsId(int index) {
+        return componentIds != null ? componentIds[index] : 0;
+    }
+
+    public String getItemDeltaComponents(int index) {
+        int componentsId = getItemDeltaComponentsId(index);
+        return componentsId != 0 ? ComponentTable.get(componentsId) : null;
+    }
+
     public List<String> getItemsAdded() {
-        return new ArrayList<>(itemsAdded);
+        return formatItems(true);
     }
 
     public List<String> getItemsRemoved() {
-        return new ArrayList<>(itemsRemoved);
+        return formatItems(false);
+    }
+
+    private List<String> formatItems(boolean added) {
+        // Text is only built for display, records keep ids and counts
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < itemIds.length; i++) {
+            if (itemCounts[i] > 0 == added) {
+                String item = SymbolTable.get(itemIds[i]) + " x" + Math.abs(itemCounts[i]);
+                String itemComponents = getItemDeltaComponents(i);
+                if (itemComponents != null) {
+                    item += " " + (itemComponents.length() > MAX_COMPONENT_TEXT
+                            ? itemComponents.substring(0, MAX_COMPONENT_TEXT) + "..." : itemComponents);
+                }
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    public static String getItemId(String itemEntry) {
+        // Entries look like "minecraft:diamond x12"
+        int countSeparator = itemEntry.lastIndexOf(" x");
+        return countSeparator >= 0 ? itemEntry.substring(0, countSeparator) : itemEntry;
+    }
+
+    public static int getItemCount(String itemEntry) {
+        int countSeparator = itemEntry.lastIndexOf(" x");
+        if (countSeparator < 0) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(itemEntry.substring(countSeparator + 2));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
     }
 
     public String getFormattedTimestamp() {
@@ -123,9 +305,11 @@ public class ChestAccessLog {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(getFormattedTimestamp()).append(" - ");
-        sb.append(playerName).append(" @ ");
-        sb.append(getFormattedPosition()).append(" (").append(dimension).append(")");
+        sb.append(getPlayerName()).append(" @ ");
+        sb.append(getFormattedPosition()).append(" (").append(getDimension()).append(")");
 
+        List<String> itemsAdded = getItemsAdded();
+        List<String> itemsRemoved = getItemsRemoved();
         if (!itemsAdded.isEmpty()) {
             sb.append("\n  +: ").append(String.join(", ", itemsAdded));
         }
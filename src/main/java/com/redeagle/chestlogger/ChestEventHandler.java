@@ -1,9 +1,15 @@
 package com.redeagle.chestlogger;
 
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
-import net.minecraft.block.*;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.component.ComponentChanges;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.Registries;
 import net.minecraft.screen.GenericContainerScreenHandler;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -21,13 +27,28 @@ public class ChestEventHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
     private static final Map<UUID, ContainerSnapshot> openContainers = new HashMap<>();
 
+    // Scratch buffers indexed by raw item id, reused for every open and close on the server thread
+    private static int[] itemCounts = new int[0];
+    private static int[] touchedMarks = new int[0];
+    private static int[] itemSymbols = new int[0]; // SymbolTable id + 1 per raw item id, 0 until first logged
+    private static int[] touchedItems = new int[64];
+    private static int touchedCount = 0;
+    private static int touchEpoch = 0;
+    // Items with component changes (enchantments, names, ...) are told apart by comparing the changes in memory;
+    // plain items stay in the arrays above
+    private static final Object2IntOpenHashMap<Variant> variantCounts = new Object2IntOpenHashMap<>();
+
+    private record Variant(int itemId, ComponentChanges changes) {
+    }
+
     public static void register() {
         // Fabric uses a different event system - we need to track screen opening/closing
         // This is done via ScreenHandler events
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> onDisconnect(handler.getPlayer()));
         LOGGER.info("ChestEventHandler registered");
     }
 
-    public static boolean canOpenContainer(ServerPlayerEntity player, BlockPos pos, String dimension) {
+    public static boolean canOpenContainer(ServerPlayerEntity player, BlockPos pos, RegistryKey<World> dimension) {
         if (!Config.enableChestLocking) {
             return true;
         }
@@ -41,159 +62,229 @@ public class ChestEventHandler {
     }
 
     public static void onContainerOpen(ServerPlayerEntity player, ScreenHandler handler, BlockPos pos, String dimension) {
-        LOGGER.info("Container opened event fired!");
-
         if (pos != null && isTrackedContainer(player.getWorld(), pos)) {
-            // Take snapshot of container contents
-            Map<String, Integer> contents = captureContainerContents(handler);
-            LOGGER.info("Captured {} unique items in container", contents.size());
-            LOGGER.info("Container contents: {}", contents);
-
-            ContainerSnapshot snapshot = new ContainerSnapshot(
-                    pos,
-                    dimension,
-                    contents
-            );
-            openContainers.put(player.getUuid(), snapshot);
-            LOGGER.info("Player {} opened container at {}, snapshot saved", player.getName().getString(), pos);
-        } else {
-            LOGGER.info("Container not tracked or position is null");
+            // Snapshots are reused per player, so opening a container does not allocate once warmed up
+            ContainerSnapshot snapshot = openContainers.computeIfAbsent(player.getUuid(), uuid -> new ContainerSnapshot());
+            snapshot.position = pos;
+            snapshot.dimension = dimension;
+            snapshot.handler = handler;
+            snapshot.open = true;
+
+            beginTouch();
+            addContents(handler);
+            snapshot.size = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int itemId = touchedItems[i];
+                snapshot.add(itemId, null, itemCounts[itemId]);
+                itemCounts[itemId] = 0;
+            }
+            for (Object2IntMap.Entry<Variant> variant : variantCounts.object2IntEntrySet()) {
+                snapshot.add(variant.getKey().itemId(), variant.getKey().changes(), variant.getIntValue());
+            }
+            variantCounts.clear();
+
+            LOGGER.debug("Player {} opened container at {} with {} unique items", player.getName().getString(), pos, snapshot.size);
         }
     }
 
     public static void onContainerClose(ServerPlayerEntity player, ScreenHandler handler) {
-        LOGGER.info("Container closed event fired!");
-
-        UUID playerUUID = player.getUuid();
-        ContainerSnapshot snapshot = openContainers.remove(playerUUID);
+        ContainerSnapshot snapshot = openContainers.get(player.getUuid());
 
-        if (snapshot == null) {
-            LOGGER.info("No snapshot found for player {}", player.getName().getString());
+        if (snapshot == null || !snapshot.open) {
             return;
         }
-
-        // Compare old and new contents
-        Map<String, Integer> newContents = captureContainerContents(handler);
-        LOGGER.info("Old contents: {}", snapshot.contents);
-        LOGGER.info("New contents: {}", newContents);
-
-        List<String> itemsAdded = new ArrayList<>();
-        List<String> itemsRemoved = new ArrayList<>();
-
-        // Find items that were added
-        for (Map.Entry<String, Integer> entry : newContents.entrySet()) {
-            String itemName = entry.getKey();
-            int newCount = entry.getValue();
-            int oldCount = snapshot.contents.getOrDefault(itemName, 0);
-
-            if (newCount > oldCount) {
-                itemsAdded.add(itemName + " x" + (newCount - oldCount));
-                LOGGER.info("Item added: {} x{}", itemName, (newCount - oldCount));
+        snapshot.open = false;
+        snapshot.handler = null;
+
+        // Compare old and new contents: item counts end up as (new - old) per raw item id and component changes
+        beginTouch();
+        for (int i = 0; i < snapshot.size; i++) {
+            int itemId = snapshot.itemIds[i];
+            if (snapshot.components[i] == null) {
+                touch(itemId);
+                itemCounts[itemId] -= snapshot.counts[i];
+            } else {
+                variantCounts.addTo(new Variant(itemId, snapshot.components[i]), -snapshot.counts[i]);
             }
         }
+        Arrays.fill(snapshot.components, 0, snapshot.size, null); // Do not keep closed containers' items alive
+        addContents(handler);
 
-        // Find items that were removed
-        for (Map.Entry<String, Integer> entry : snapshot.contents.entrySet()) {
-            String itemName = entry.getKey();
-            int oldCount = entry.getValue();
-            int newCount = newContents.getOrDefault(itemName, 0);
-
-            if (oldCount > newCount) {
-                itemsRemoved.add(itemName + " x" + (oldCount - newCount));
-                LOGGER.info("Item removed: {} x{}", itemName, (oldCount - newCount));
+        int changes = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            if (itemCounts[touchedItems[i]] != 0) {
+                changes++;
+            }
+        }
+        for (int count : variantCounts.values()) {
+            if (count != 0) {
+                changes++;
             }
         }
-
-        LOGGER.info("Items added: {}, Items removed: {}", itemsAdded.size(), itemsRemoved.size());
 
         // Only log if there were changes
-        if (!itemsAdded.isEmpty() || !itemsRemoved.isEmpty()) {
-            ChestAccessLog log = new ChestAccessLog(
-                    player.getName().getString(),
-                    snapshot.position,
-                    snapshot.dimension,
-                    System.currentTimeMillis(),
-                    itemsAdded,
-                    itemsRemoved
-            );
-
-            ChestLogManager manager = Chestlogger.getLogManager();
-            if (manager != null) {
-                manager.addLog(log);
-                LOGGER.info("Logged chest access by {} at {}", player.getName().getString(), snapshot.position);
-            } else {
-                LOGGER.warn("ChestLogManager is null, cannot save log!");
+        if (changes == 0) {
+            resetTouched();
+            return;
+        }
+
+        // Records hold shared symbol ids, item names are only looked up the first time an item is logged
+        int[] itemIds = new int[changes];
+        int[] deltas = new int[changes];
+        int[] componentIds = variantCounts.isEmpty() ? null : new int[changes];
+        int index = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int itemId = touchedItems[i];
+            int delta = itemCounts[itemId];
+            if (delta != 0) {
+                itemIds[index] = getItemSymbol(itemId);
+                deltas[index++] = delta;
             }
+        }
+        for (Object2IntMap.Entry<Variant> variant : variantCounts.object2IntEntrySet()) {
+            if (variant.getIntValue() != 0) {
+                itemIds[index] = getItemSymbol(variant.getKey().itemId());
+                componentIds[index] = ComponentTable.intern(encodeComponents(player, variant.getKey().changes()));
+                deltas[index++] = variant.getIntValue();
+            }
+        }
+        resetTouched();
+
+        ChestAccessLog log = new ChestAccessLog(
+                SymbolTable.intern(player.getName().getString()),
+                SymbolTable.intern(player.getUuidAsString()),
+                snapshot.position,
+                SymbolTable.intern(snapshot.dimension),
+                System.currentTimeMillis(),
+                itemIds,
+                deltas,
+                componentIds
+        );
+
+        ChestLogManager manager = Chestlogger.getLogManager();
+        if (manager != null) {
+            manager.addLog(log);
+            LOGGER.debug("Logged chest access by {} at {}", player.getName().getString(), snapshot.position);
         } else {
-            LOGGER.info("No changes detected, not logging");
+            LOGGER.warn("ChestLogManager is null, cannot save log!");
         }
     }
 
+    private static void onDisconnect(ServerPlayerEntity player) {
+        // Runs before the screen is closed on logout, so the container still holds what the player left in it
+        ContainerSnapshot snapshot = openContainers.get(player.getUuid());
+        if (snapshot != null && snapshot.open) {
+            onContainerClose(player, snapshot.handler);
+        }
+        openContainers.remove(player.getUuid());
+    }
+
     private static boolean isTrackedContainer(World world, BlockPos pos) {
         if (pos == null || world == null) {
             return false;
         }
 
-        Block block = world.getBlockState(pos).getBlock();
-
-        // Check vanilla containers
-        boolean isVanillaContainer =
-            (Config.trackChests && block instanceof ChestBlock) ||
-            (Config.trackBarrels && block instanceof BarrelBlock) ||
-            (Config.trackShulkerBoxes && block instanceof ShulkerBoxBlock) ||
-            (Config.trackEnderChests && block instanceof EnderChestBlock) ||
-            (Config.trackHoppers && block instanceof HopperBlock);
+        // Precomputed from the block registry, see ContainerBlocks
+        return ContainerBlocks.isTracked(world.getBlockState(pos).getBlock());
+    }
 
-        if (isVanillaContainer) {
-            return true;
+    private static int getItemSymbol(int itemId) {
+        if (itemSymbols[itemId] == 0) {
+            itemSymbols[itemId] = SymbolTable.intern(Registries.ITEM.get(itemId).toString()) + 1;
         }
-
-        // Check for any modded containers by checking if there's a BlockEntity with inventory
-        // This catches Reinforced Chests, Barrels, Shulkers, and any other modded containers
-        String blockName = block.getTranslationKey().toLowerCase();
-        return blockName.contains("chest") ||
-               blockName.contains("barrel") ||
-               blockName.contains("shulker") ||
-               blockName.contains("storage") ||
-               blockName.contains("container");
+        return itemSymbols[itemId] - 1;
     }
 
-    private static Map<String, Integer> captureContainerContents(ScreenHandler handler) {
-        Map<String, Integer> contents = new HashMap<>();
+    private static String encodeComponents(ServerPlayerEntity player, ComponentChanges changes) {
+        // Only done for logged deltas; the SNBT is what the segment stores and what chat shows
+        return ComponentChanges.CODEC.encodeStart(player.getRegistryManager().getOps(NbtOps.INSTANCE), changes)
+                .result()
+                .map(Object::toString)
+                .orElse(null);
+    }
 
+    private static void addContents(ScreenHandler handler) {
         // For GenericContainerScreenHandler, only capture the container inventory slots (not player inventory)
-        if (handler instanceof GenericContainerScreenHandler containerHandler) {
-            int containerSize = containerHandler.getInventory().size();
-            for (int i = 0; i < containerSize; i++) {
-                ItemStack stack = containerHandler.getSlot(i).getStack();
-                if (!stack.isEmpty()) {
-                    String itemName = stack.getItem().toString();
-                    contents.merge(itemName, stack.getCount(), Integer::sum);
+        int slotCount = handler instanceof GenericContainerScreenHandler containerHandler
+                ? containerHandler.getInventory().size()
+                : handler.slots.size(); // Fallback for other container types - capture all slots
+
+        for (int i = 0; i < slotCount; i++) {
+            ItemStack stack = handler.getSlot(i).getStack();
+            if (!stack.isEmpty()) {
+                int itemId = Registries.ITEM.getRawId(stack.getItem());
+                ComponentChanges changes = stack.getComponentChanges();
+                if (changes.isEmpty()) {
+                    touch(itemId);
+                    itemCounts[itemId] += stack.getCount();
+                } else {
+                    ensureCapacity(itemId);
+                    variantCounts.addTo(new Variant(itemId, changes), stack.getCount());
                 }
             }
-        } else {
-            // Fallback for other container types - capture all slots
-            for (int i = 0; i < handler.slots.size(); i++) {
-                ItemStack stack = handler.getSlot(i).getStack();
-                if (!stack.isEmpty()) {
-                    String itemName = stack.getItem().toString();
-                    contents.merge(itemName, stack.getCount(), Integer::sum);
-                }
+        }
+    }
+
+    private static void beginTouch() {
+        touchedCount = 0;
+        if (++touchEpoch == 0) {
+            // Epoch wrapped around, stale marks could now look current
+            Arrays.fill(touchedMarks, 0);
+            touchEpoch = 1;
+        }
+    }
+
+    private static void touch(int itemId) {
+        ensureCapacity(itemId);
+
+        if (touchedMarks[itemId] != touchEpoch) {
+            touchedMarks[itemId] = touchEpoch;
+            if (touchedCount == touchedItems.length) {
+                touchedItems = Arrays.copyOf(touchedItems, touchedCount * 2);
             }
+            touchedItems[touchedCount++] = itemId;
         }
+    }
 
-        return contents;
+    private static void ensureCapacity(int itemId) {
+        if (itemId >= itemCounts.length) {
+            int newSize = Math.max(itemId + 1, Registries.ITEM.size());
+            itemCounts = Arrays.copyOf(itemCounts, newSize);
+            touchedMarks = Arrays.copyOf(touchedMarks, newSize);
+            itemSymbols = Arrays.copyOf(itemSymbols, newSize);
+        }
+    }
+
+    private static void resetTouched() {
+        for (int i = 0; i < touchedCount; i++) {
+            itemCounts[touchedItems[i]] = 0;
+        }
+        touchedCount = 0;
+        variantCounts.clear();
     }
 
     private static class ContainerSnapshot {
-        final BlockPos position;
-        final String dimension;
-        final Map<String, Integer> contents;
-
-        ContainerSnapshot(BlockPos position, String dimension, Map<String, Integer> contents) {
-            this.position = position;
-            this.dimension = dimension;
-            this.contents = contents;
+        BlockPos position;
+        String dimension;
+        ScreenHandler handler; // The open screen, needed to read the contents when the player disconnects
+        boolean open;
+        // Parallel arrays of raw item id, component changes (null for plain items) and count,
+        // grown as needed and reused across opens
+        int[] itemIds = new int[16];
+        ComponentChanges[] components = new ComponentChanges[16];
+        int[] counts = new int[16];
+        int size;
+
+        void add(int itemId, ComponentChanges changes, int count) {
+            if (size == itemIds.length) {
+                itemIds = Arrays.copyOf(itemIds, size * 2);
+                components = Arrays.copyOf(components, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            itemIds[size] = itemId;
+            components[size] = changes;
+            counts[size] = count;
+            size++;
         }
     }
 }
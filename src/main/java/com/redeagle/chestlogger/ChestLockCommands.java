@@ -6,6 +6,7 @@ import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -67,7 +68,7 @@ public class ChestLockCommands {
         }
 
         ChestLockManager lockManager = Chestlogger.getLockManager();
-        String dimension = world.getRegistryKey().getValue().toString();
+        RegistryKey<World> dimension = world.getRegistryKey();
 
         if (lockManager.isLocked(targetPos, dimension)) {
             source.sendError(Text.literal("This container is already locked"));
@@ -76,7 +77,7 @@ public class ChestLockCommands {
 
         // Check max locks per player
         if (Config.maxLocksPerPlayer > 0) {
-            int currentLocks = lockManager.getPlayerLocks(player.getUuid()).size();
+            int currentLocks = lockManager.getPlayerLockCount(player.getUuid());
             if (currentLocks >= Config.maxLocksPerPlayer) {
                 source.sendError(Text.literal("You have reached the maximum number of locks (" + Config.maxLocksPerPlayer + ")"));
                 return 0;
@@ -85,7 +86,7 @@ public class ChestLockCommands {
 
         lockManager.lockChest(player, targetPos, dimension);
         source.sendFeedback(() -> Text.literal("§aContainer locked successfully"), false);
-        LOGGER.info("Player {} locked container at {} in {}", player.getName().getString(), targetPos, dimension);
+        LOGGER.info("Player {} locked container at {} in {}", player.getName().getString(), targetPos, dimension.getValue());
 
         return 1;
     }
@@ -105,7 +106,7 @@ public class ChestLockCommands {
         }
 
         World world = player.getWorld();
-        String dimension = world.getRegistryKey().getValue().toString();
+        RegistryKey<World> dimension = world.getRegistryKey();
 
         ChestLockManager lockManager = Chestlogger.getLockManager();
 
@@ -124,7 +125,7 @@ public class ChestLockCommands {
 
         lockManager.unlockChest(targetPos, dimension);
         source.sendFeedback(() -> Text.literal("§aContainer unlocked successfully"), false);
-        LOGGER.info("Player {} unlocked container at {} in {}", player.getName().getString(), targetPos, dimension);
+        LOGGER.info("Player {} unlocked container at {} in {}", player.getName().getString(), targetPos, dimension.getValue());
 
         return 1;
     }
@@ -144,7 +145,7 @@ public class ChestLockCommands {
         }
 
         World world = player.getWorld();
-        String dimension = world.getRegistryKey().getValue().toString();
+        RegistryKey<World> dimension = world.getRegistryKey();
 
         ChestLockManager lockManager = Chestlogger.getLockManager();
 
@@ -172,25 +173,26 @@ public class ChestLockCommands {
         }
 
         ChestLockManager lockManager = Chestlogger.getLockManager();
-        var locks = lockManager.getPlayerLocks(player.getUuid());
-
-        if (locks.isEmpty()) {
-            source.sendFeedback(() -> Text.literal("§7You don't have any locked containers"), false);
-            return 1;
-        }
+        // Locks in unloaded regions are read from disk first, the list is sent once they are in
+        lockManager.getPlayerLocks(player.getUuid()).thenAccept(locks -> {
+            if (locks.isEmpty()) {
+                source.sendFeedback(() -> Text.literal("§7You don't have any locked containers"), false);
+                return;
+            }
 
-        source.sendFeedback(() -> Text.literal("§6=== Your Locks (" + locks.size() + ") ==="), false);
-        for (ChestLock lock : locks) {
-            String posText = String.format("[%d, %d, %d]",
-                lock.getPosition().getX(),
-                lock.getPosition().getY(),
-                lock.getPosition().getZ());
-            source.sendFeedback(() -> Text.literal("§7" + posText + " §8in §7" + lock.getDimension()), false);
-        }
+            source.sendFeedback(() -> Text.literal("§6=== Your Locks (" + locks.size() + ") ==="), false);
+            for (ChestLock lock : locks) {
+                String posText = String.format("[%d, %d, %d]",
+                    lock.getPosition().getX(),
+                    lock.getPosition().getY(),
+                    lock.getPosition().getZ());
+                source.sendFeedback(() -> Text.literal("§7" + posText + " §8in §7" + lock.getDimension()), false);
+            }
 
-        if (Config.maxLocksPerPlayer > 0) {
-            source.sendFeedback(() -> Text.literal("§8(" + locks.size() + "/" + Config.maxLocksPerPlayer + " locks used)"), false);
-        }
+            if (Config.maxLocksPerPlayer > 0) {
+                source.sendFeedback(() -> Text.literal("§8(" + locks.size() + "/" + Config.maxLocksPerPlayer + " locks used)"), false);
+            }
+        });
 
         return 1;
     }
@@ -215,11 +217,6 @@ public class ChestLockCommands {
     }
 
     private static boolean isLockableContainer(Block block) {
-        String blockName = block.getTranslationKey().toLowerCase();
-        return blockName.contains("chest") ||
-               blockName.contains("barrel") ||
-               blockName.contains("shulker") ||
-               blockName.contains("storage") ||
-               blockName.contains("container");
+        return ContainerBlocks.isLockable(block);
     }
 }
@@ -1,78 +1,105 @@
 package com.redeagle.chestlogger;
 
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtList;
-import net.minecraft.nbt.NbtSizeTracker;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 public class ChestLockManager {
     private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
-    private static final String LOCK_FILE_NAME = "chest_locks.dat";
-
-    private final File lockFile;
-    private final Map<String, ChestLock> locks; // Key: "dimension:x:y:z"
+    private static final String LOCK_DIRECTORY_NAME = "chest_locks";
+    private static final String LEGACY_LOCK_FILE_NAME = "chest_locks.dat"; // Single file holding every lock
+    private static final int FLUSH_INTERVAL_TICKS = 100; // Lock changes reach the disk within 5 seconds
+    private static final int COMPACT_THRESHOLD = 1000; // Journal entries before dirty regions are rewritten
+    // Stands in for every lock of a region that is still being read: nobody can open, break or lock anything
+    // there until the real locks are known
+    private static final ChestLock LOADING_LOCK = new ChestLock(new UUID(0, 0), "(loading)", BlockPos.ORIGIN, "", 0);
+
+    private final MinecraftServer server;
+    private final LockJournal journal;
+    // Only regions with at least one loaded chunk are kept in memory; world keys are interned
+    private final Map<RegistryKey<World>, Long2ObjectOpenHashMap<LockRegion>> regions;
+    // Covers every lock in the world, including unloaded regions
+    private LockOwnerIndex ownerIndex = new LockOwnerIndex();
+    private int ticksSinceFlush = 0;
 
     public ChestLockManager(MinecraftServer server) {
+        this.server = server;
         Path worldDir = server.getRunDirectory();
-        Path lockPath = worldDir.resolve(LOCK_FILE_NAME);
-        this.lockFile = lockPath.toFile();
+        Path lockDir = worldDir.resolve(LOCK_DIRECTORY_NAME);
+        this.journal = new LockJournal(lockDir);
 
-        LOGGER.info("ChestLockManager initialized with lock file: {}", lockFile.getAbsolutePath());
+        LOGGER.info("ChestLockManager initialized with lock directory: {}", lockDir.toAbsolutePath());
 
-        this.locks = new HashMap<>();
-        loadLocks();
+        this.regions = new Reference2ObjectOpenHashMap<>();
+        try {
+            this.ownerIndex = journal.recover(worldDir.resolve(LEGACY_LOCK_FILE_NAME));
+            LOGGER.info("Found {} chest locks", ownerIndex.getTotalLockCount());
+        } catch (IOException e) {
+            LOGGER.error("Failed to load chest locks", e);
+        }
     }
 
-    public boolean lockChest(ServerPlayerEntity player, BlockPos pos, String dimension) {
-        String key = getKey(pos, dimension);
-
+    public boolean lockChest(ServerPlayerEntity player, BlockPos pos, RegistryKey<World> dimension) {
         // Check if already locked
-        if (locks.containsKey(key)) {
+        if (isLocked(pos, dimension)) {
             return false;
         }
 
         // Check max locks per player (if configured)
-        if (Config.maxLocksPerPlayer > 0) {
-            long playerLockCount = locks.values().stream()
-                    .filter(lock -> lock.isOwner(player.getUuid()))
-                    .count();
+        if (Config.maxLocksPerPlayer > 0 && getPlayerLockCount(player.getUuid()) >= Config.maxLocksPerPlayer) {
+            return false;
+        }
 
-            if (playerLockCount >= Config.maxLocksPerPlayer) {
-                return false;
-            }
+        LockRegion region = getRegion(dimension, LockRegion.keyOf(pos));
+        if (region == null) {
+            LOGGER.warn("Cannot lock chest at {}, its chunk is not loaded", pos);
+            return false;
         }
 
         ChestLock lock = new ChestLock(
                 player.getUuid(),
                 player.getName().getString(),
                 pos,
-                dimension,
+                dimension.getValue().toString(),
                 System.currentTimeMillis()
         );
 
-        locks.put(key, lock);
-        saveLocks();
+        ChestLock previous = region.put(lock);
+        if (previous != null) {
+            ownerIndex.remove(previous);
+        }
+        ownerIndex.add(lock);
+        region.markDirty();
+        journal.recordLock(lock);
         LOGGER.info("Player {} locked chest at {}", player.getName().getString(), pos);
         return true;
     }
 
-    public boolean unlockChest(BlockPos pos, String dimension) {
-        String key = getKey(pos, dimension);
-        ChestLock removed = locks.remove(key);
+    public boolean unlockChest(BlockPos pos, RegistryKey<World> dimension) {
+        LockRegion region = getRegion(dimension, LockRegion.keyOf(pos));
+        ChestLock removed = region != null && !region.isLoading() ? region.remove(pos.asLong()) : null;
 
         if (removed != null) {
-            saveLocks();
+            ownerIndex.remove(removed);
+            region.markDirty();
+            journal.recordUnlock(removed.getDimension(), pos);
             LOGGER.info("Unlocked chest at {}", pos);
             return true;
         }
@@ -80,96 +107,205 @@ public class ChestLockManager {
         return false;
     }
 
-    public boolean isLocked(BlockPos pos, String dimension) {
-        return locks.containsKey(getKey(pos, dimension));
+    public boolean isLocked(BlockPos pos, RegistryKey<World> dimension) {
+        return getLock(pos, dimension) != null;
     }
 
-    public ChestLock getLock(BlockPos pos, String dimension) {
-        return locks.get(getKey(pos, dimension));
+    public ChestLock getLock(BlockPos pos, RegistryKey<World> dimension) {
+        // Hot path for every block interaction: one identity lookup and two primitive hash probes
+        LockRegion region = getRegion(dimension, LockRegion.keyOf(pos));
+        if (region == null) {
+            return null;
+        }
+        return region.isLoading() ? LOADING_LOCK : region.get(pos.asLong());
     }
 
-    public boolean canAccess(ServerPlayerEntity player, BlockPos pos, String dimension) {
+    public boolean canAccess(ServerPlayerEntity player, BlockPos pos, RegistryKey<World> dimension) {
+        return canAccess(player, getLock(pos, dimension));
+    }
+
+    public boolean canAccess(ServerPlayerEntity player, ChestLock lock) {
+        if (lock == null) {
+            return true; // Not locked
+        }
+        if (lock == LOADING_LOCK) {
+            return false; // Not even admins, breaking the block would leave its lock behind
+        }
+
         // Admins can always access
         if (player.hasPermissionLevel(2)) {
             return true;
         }
 
-        ChestLock lock = getLock(pos, dimension);
-        if (lock == null) {
-            return true; // Not locked
+        return lock.isOwner(player.getUuid());
+    }
+
+    public int removeLockedPositions(RegistryKey<World> dimension, List<BlockPos> positions) {
+        // Explosions hand over thousands of positions at once: filter them in place in a single pass
+        Long2ObjectOpenHashMap<LockRegion> dimensionRegions = regions.get(dimension);
+        if (dimensionRegions == null || ownerIndex.getTotalLockCount() == 0) {
+            return 0;
         }
 
-        return lock.isOwner(player.getUuid());
+        // Affected blocks are clustered, so the region of the previous position is almost always the next one's too
+        long cachedKey = 0;
+        LockRegion cachedRegion = null;
+        boolean hasCached = false;
+
+        int size = positions.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            BlockPos pos = positions.get(i);
+            long regionKey = LockRegion.keyOf(pos);
+            if (!hasCached || regionKey != cachedKey) {
+                LockRegion region = dimensionRegions.get(regionKey);
+                cachedRegion = region != null && (region.isLoading() || !region.isEmpty()) ? region : null;
+                cachedKey = regionKey;
+                hasCached = true;
+            }
+
+            if (cachedRegion != null && (cachedRegion.isLoading() || cachedRegion.get(pos.asLong()) != null)) {
+                continue; // Locked, or might be, leave it standing
+            }
+            positions.set(kept++, pos);
+        }
+
+        if (kept < size) {
+            positions.subList(kept, size).clear();
+        }
+        return size - kept;
     }
 
-    public List<ChestLock> getPlayerLocks(UUID playerUUID) {
-        return locks.values().stream()
-                .filter(lock -> lock.isOwner(playerUUID))
-                .collect(Collectors.toList());
+    public CompletableFuture<List<ChestLock>> getPlayerLocks(UUID playerUUID) {
+        // Only the regions this player has locks in are visited; unloaded ones are read on the lock writer
+        // thread and the result is completed back on the server thread
+        List<ChestLock> playerLocks = new ArrayList<>();
+        List<CompletableFuture<List<ChestLock>>> reads = new ArrayList<>();
+        for (Map.Entry<String, Long2IntOpenHashMap> dimension : ownerIndex.getRegions(playerUUID).entrySet()) {
+            Long2ObjectOpenHashMap<LockRegion> dimensionRegions = regions.get(getWorldKey(dimension.getKey()));
+            for (LongIterator keys = dimension.getValue().keySet().iterator(); keys.hasNext(); ) {
+                long regionKey = keys.nextLong();
+                LockRegion region = dimensionRegions != null ? dimensionRegions.get(regionKey) : null;
+                if (region != null && !region.isLoading()) {
+                    addOwnedLocks(region.getLocks(), playerUUID, playerLocks);
+                } else {
+                    reads.add(journal.readRegionAsync(dimension.getKey(), regionKey));
+                }
+            }
+        }
+
+        return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new)).thenApplyAsync(done -> {
+            for (CompletableFuture<List<ChestLock>> read : reads) {
+                addOwnedLocks(read.join(), playerUUID, playerLocks);
+            }
+            playerLocks.sort(Comparator.comparingLong(ChestLock::getLockTimestamp));
+            return playerLocks;
+        }, server);
     }
 
-    public List<ChestLock> getAllLocks() {
-        return new ArrayList<>(locks.values());
+    private static void addOwnedLocks(Collection<ChestLock> locks, UUID playerUUID, List<ChestLock> result) {
+        for (ChestLock lock : locks) {
+            if (lock.isOwner(playerUUID)) {
+                result.add(lock);
+            }
+        }
     }
 
-    public int getLockCount() {
-        return locks.size();
+    public int getPlayerLockCount(UUID playerUUID) {
+        return ownerIndex.getLockCount(playerUUID);
     }
 
-    private String getKey(BlockPos pos, String dimension) {
-        return String.format("%s:%d:%d:%d", dimension, pos.getX(), pos.getY(), pos.getZ());
+    public int getLockCount() {
+        return ownerIndex.getTotalLockCount();
     }
 
-    private void loadLocks() {
-        if (!lockFile.exists()) {
-            LOGGER.info("No existing lock file found. Starting fresh.");
-            return;
+    public void onChunkLoad(RegistryKey<World> dimension, ChunkPos chunkPos) {
+        long regionKey = LockRegion.keyOf(chunkPos);
+        Long2ObjectOpenHashMap<LockRegion> dimensionRegions = regions.computeIfAbsent(dimension, key -> new Long2ObjectOpenHashMap<>());
+        LockRegion region = dimensionRegions.get(regionKey);
+        if (region == null) {
+            region = new LockRegion();
+            String dimensionName = dimension.getValue().toString();
+            // Most regions have no locks at all, the owner index saves the file lookup for those
+            if (ownerIndex.hasLocks(dimensionName, regionKey)) {
+                loadRegion(dimensionName, regionKey, region);
+            }
+            dimensionRegions.put(regionKey, region);
         }
+        region.retain();
+    }
 
-        try {
-            NbtCompound rootTag = NbtIo.readCompressed(lockFile.toPath(), NbtSizeTracker.ofUnlimitedBytes());
-            if (rootTag.contains("Locks")) {
-                rootTag.getList("Locks").ifPresent(locksList -> {
-                    for (int i = 0; i < locksList.size(); i++) {
-                        locksList.getCompound(i).ifPresent(lockTag -> {
-                            ChestLock lock = ChestLock.fromNBT(lockTag);
-                            String key = getKey(lock.getPosition(), lock.getDimension());
-                            locks.put(key, lock);
-                        });
-                    }
-                });
+    private void loadRegion(String dimension, long regionKey, LockRegion region) {
+        // The region file is read off the server thread; until its locks are handed back every position in the
+        // region counts as locked, see LOADING_LOCK. Nothing can change a loading region, so it is never dirty
+        region.setLoading(true);
+        journal.readRegionAsync(dimension, regionKey).thenAccept(locks -> server.execute(() -> {
+            for (ChestLock lock : locks) {
+                region.put(lock);
             }
+            region.setLoading(false);
+        }));
+    }
 
-            LOGGER.info("Loaded {} chest locks", locks.size());
-        } catch (IOException e) {
-            LOGGER.error("Failed to load chest locks", e);
+    public void onChunkUnload(RegistryKey<World> dimension, ChunkPos chunkPos) {
+        long regionKey = LockRegion.keyOf(chunkPos);
+        Long2ObjectOpenHashMap<LockRegion> dimensionRegions = regions.get(dimension);
+        LockRegion region = dimensionRegions != null ? dimensionRegions.get(regionKey) : null;
+        if (region == null || !region.release()) {
+            return;
+        }
+
+        dimensionRegions.remove(regionKey);
+        if (region.isDirty()) {
+            journal.writeRegion(dimension.getValue().toString(), regionKey, region.copyLocks());
         }
     }
 
-    private void saveLocks() {
-        try {
-            NbtCompound rootTag = new NbtCompound();
-            NbtList locksList = new NbtList();
+    private LockRegion getRegion(RegistryKey<World> dimension, long regionKey) {
+        Long2ObjectOpenHashMap<LockRegion> dimensionRegions = regions.get(dimension);
+        return dimensionRegions != null ? dimensionRegions.get(regionKey) : null;
+    }
 
-            for (ChestLock lock : locks.values()) {
-                locksList.add(lock.toNBT());
-            }
+    private static RegistryKey<World> getWorldKey(String dimension) {
+        return RegistryKey.of(RegistryKeys.WORLD, Identifier.of(dimension));
+    }
 
-            rootTag.put("Locks", locksList);
+    private void compact() {
+        writeDirtyRegions();
+        journal.compact(ownerIndex.toBytes());
+    }
 
-            // Ensure parent directory exists
-            File parentDir = lockFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
+    private void writeDirtyRegions() {
+        // Only loaded regions that changed; unloaded ones were written when their last chunk unloaded
+        for (Map.Entry<RegistryKey<World>, Long2ObjectOpenHashMap<LockRegion>> dimension : regions.entrySet()) {
+            String dimensionName = dimension.getKey().getValue().toString();
+            for (Long2ObjectMap.Entry<LockRegion> entry : dimension.getValue().long2ObjectEntrySet()) {
+                LockRegion region = entry.getValue();
+                if (region.isDirty()) {
+                    journal.writeRegion(dimensionName, entry.getLongKey(), region.copyLocks());
+                    region.markClean();
+                }
             }
+        }
+    }
 
-            NbtIo.writeCompressed(rootTag, lockFile.toPath());
-        } catch (IOException e) {
-            LOGGER.error("Failed to save chest locks", e);
+    public void tick() {
+        // Called every server tick; lock changes are written in batches on the lock writer thread
+        if (++ticksSinceFlush < FLUSH_INTERVAL_TICKS) {
+            return;
+        }
+        ticksSinceFlush = 0;
+
+        if (journal.getEntriesSinceSnapshot() >= COMPACT_THRESHOLD) {
+            compact();
+        } else {
+            journal.flush();
         }
     }
 
     public void flush() {
-        saveLocks();
+        // Server shutdown: write every changed region and wait for the lock writer to finish
+        writeDirtyRegions();
+        journal.close(ownerIndex.toBytes());
     }
 }
@@ -4,18 +4,62 @@ import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.minecraft.command.CommandSource;
 import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.command.argument.IdentifierArgumentType;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.HoverEvent;
+import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
 import net.minecraft.util.math.BlockPos;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
 
 public class ChestLogCommands {
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+)([smhdw])");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("H:mm");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("d.M.yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("d.M.yyyy H:mm");
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_SEARCH_RADIUS = 1024;
+    private static final int MAX_RESULTS = 1000; // Only the newest matches of a query are kept
+    private static final long CURSOR_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10); // Results to page through expire after this
+    private static final String SEARCH_EXAMPLE = "Beispiel: player=Steve item=diamond action=removed radius=32 since=2d, "
+            + "Teil einer Item-ID mit item=*sword*";
+
+    // Last query result per command source, paged through with /chestlog page; only used on the server thread
+    private static final Map<String, LogCursor> cursors = new HashMap<>();
+
+    private record LogCursor(String title, List<ChestAccessLog> logs, long createdAt) {
+        int getPageCount() {
+            return (logs.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        }
+
+        boolean isExpired(long now) {
+            return now - createdAt > CURSOR_TTL_MILLIS;
+        }
+    }
 
     public static void register() {
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
@@ -25,6 +69,16 @@ public class ChestLogCommands {
                             .then(literal("query")
                                     .then(argument("player", StringArgumentType.string())
                                             .executes(ChestLogCommands::queryPlayer)))
+                            .then(literal("item")
+                                    .then(argument("item", IdentifierArgumentType.identifier())
+                                            .suggests((context, builder) -> CommandSource.suggestIdentifiers(Registries.ITEM.getIds(), builder))
+                                            .executes(ctx -> logsByItem(ctx, null, null))
+                                            .then(argument("player", StringArgumentType.word())
+                                                    .executes(ctx -> logsByItem(ctx, StringArgumentType.getString(ctx, "player"), null))
+                                                    .then(argument("since", StringArgumentType.word())
+                                                            .executes(ctx -> logsByItem(ctx,
+                                                                    StringArgumentType.getString(ctx, "player"),
+                                                                    StringArgumentType.getString(ctx, "since")))))))
                             .then(literal("recent")
                                     .executes(ctx -> recentLogs(ctx, 10))
                                     .then(argument("count", IntegerArgumentType.integer(1, 100))
@@ -34,149 +88,439 @@ public class ChestLogCommands {
                                             .executes(ChestLogCommands::logsAtPosition)))
                             .then(literal("here")
                                     .executes(ChestLogCommands::logsHere))
+                            .then(literal("near")
+                                    .then(argument("radius", IntegerArgumentType.integer(1, 128))
+                                            .executes(ChestLogCommands::logsNear)))
+                            .then(literal("area")
+                                    .then(argument("from", BlockPosArgumentType.blockPos())
+                                            .then(argument("to", BlockPosArgumentType.blockPos())
+                                                    .executes(ChestLogCommands::logsInArea))))
+                            .then(literal("since")
+                                    .then(argument("duration", StringArgumentType.word())
+                                            .executes(ChestLogCommands::logsSince)))
+                            .then(literal("between")
+                                    .then(argument("range", StringArgumentType.greedyString())
+                                            .executes(ChestLogCommands::logsBetween)))
+                            .then(literal("search")
+                                    .then(argument("filters", StringArgumentType.greedyString())
+                                            .executes(ChestLogCommands::search)))
+                            .then(literal("page")
+                                    .then(argument("page", IntegerArgumentType.integer(1))
+                                            .executes(ChestLogCommands::showPage)))
                             .then(literal("clear")
                                     .executes(ChestLogCommands::clearAllLogs))
                             .then(literal("clearold")
                                     .then(argument("days", IntegerArgumentType.integer(1, 365))
                                             .executes(ChestLogCommands::clearOldLogs)))
                             .then(literal("stats")
-                                    .executes(ChestLogCommands::showStats))
+                                    .executes(ctx -> showStats(ctx, 5))
+                                    .then(argument("top", IntegerArgumentType.integer(1, 20))
+                                            .executes(ctx -> showStats(ctx, IntegerArgumentType.getInteger(ctx, "top")))))
+                            .then(literal("reload")
+                                    .executes(ChestLogCommands::reloadConfig))
             );
         });
     }
 
     private static int queryPlayer(CommandContext<ServerCommandSource> ctx) {
         String playerName = StringArgumentType.getString(ctx, "player");
-        ChestLogManager manager = Chestlogger.getLogManager();
+        return runQuery(ctx, manager -> manager.getLogsByPlayer(playerName, MAX_RESULTS),
+                "Chest-Logs für " + playerName, "Keine Logs für Spieler: " + playerName);
+    }
 
-        if (manager == null) {
-            ctx.getSource().sendError(Text.literal("Log-Manager nicht verfügbar!"));
+    private static int logsByItem(CommandContext<ServerCommandSource> ctx, String player, String sinceText) {
+        String itemId = IdentifierArgumentType.getIdentifier(ctx, "item").toString();
+        // "*" stands for every player, so a time window can be given without naming a player
+        String playerName = player == null || player.equals("*") ? null : player;
+        long since = 0;
+        if (sinceText != null) {
+            long duration = parseDuration(sinceText);
+            if (duration <= 0) {
+                ctx.getSource().sendError(Text.literal("Ungültige Dauer: " + sinceText + " (Beispiele: 30m, 2h, 1d12h)"));
+                return 0;
+            }
+            since = System.currentTimeMillis() - duration;
+        }
+
+        long finalSince = since;
+        return runQuery(ctx, manager -> manager.getLogsByItem(itemId, playerName, finalSince, MAX_RESULTS),
+                "Chest-Logs für " + itemId, "Keine Logs für Item: " + itemId);
+    }
+
+    private static int recentLogs(CommandContext<ServerCommandSource> ctx, int count) {
+        return runQuery(ctx, manager -> manager.getRecentLogs(count),
+                logs -> "Letzte " + logs.size() + " Chest-Zugriffe", "Keine Logs vorhanden.");
+    }
+
+    private static int logsAtPosition(CommandContext<ServerCommandSource> ctx) {
+        try {
+            BlockPos pos = BlockPosArgumentType.getBlockPos(ctx, "pos");
+            String dimension = ctx.getSource().getWorld().getRegistryKey().getValue().toString();
+            return runQuery(ctx, manager -> manager.getLogsByPosition(pos, dimension, MAX_RESULTS),
+                    "Chest-Logs bei " + pos, "Keine Logs für Position: " + pos);
+        } catch (Exception e) {
+            ctx.getSource().sendError(Text.literal("Fehler beim Abrufen der Position: " + e.getMessage()));
             return 0;
         }
+    }
+
+    private static int logsHere(CommandContext<ServerCommandSource> ctx) {
+        try {
+            if (ctx.getSource().getEntity() == null) {
+                ctx.getSource().sendError(Text.literal("Dieser Befehl kann nur von einem Spieler ausgeführt werden!"));
+                return 0;
+            }
 
-        List<ChestAccessLog> logs = manager.getLogsByPlayer(playerName);
+            // Get player position and check the block they're standing on or looking at
+            BlockPos playerPos = ctx.getSource().getEntity().getBlockPos();
+            String dimension = ctx.getSource().getWorld().getRegistryKey().getValue().toString();
 
-        if (logs.isEmpty()) {
-            ctx.getSource().sendFeedback(() -> Text.literal("Keine Logs für Spieler: " + playerName), false);
+            return runQuery(ctx, manager -> {
+                // One box lookup covers the block below the player and the blocks around them
+                List<ChestAccessLog> nearbyLogs = manager.getLogsInBox(
+                        playerPos.add(-1, -1, -1), playerPos.add(1, 0, 1), dimension, MAX_RESULTS);
+
+                // Prefer the block below the player (if standing on container), then the surrounding blocks
+                for (BlockPos candidate : new BlockPos[]{
+                        playerPos.down(),
+                        playerPos,
+                        playerPos.north(),
+                        playerPos.south(),
+                        playerPos.east(),
+                        playerPos.west()
+                }) {
+                    List<ChestAccessLog> candidateLogs = nearbyLogs.stream()
+                            .filter(log -> log.getPosition().equals(candidate))
+                            .toList();
+                    if (!candidateLogs.isEmpty()) {
+                        return candidateLogs;
+                    }
+                }
+                return List.of();
+            }, logs -> "Chest-Logs bei " + logs.get(0).getPosition(),
+                    "Keine Container in deiner Nähe gefunden oder keine Logs vorhanden.");
+        } catch (Exception e) {
+            ctx.getSource().sendError(Text.literal("Fehler: " + e.getMessage()));
             return 0;
         }
+    }
 
-        ctx.getSource().sendFeedback(() -> Text.literal("=== Chest-Logs für " + playerName + " (" + logs.size() + " Einträge) ==="), false);
-        for (ChestAccessLog log : logs) {
-            ctx.getSource().sendFeedback(() -> Text.literal(log.toString()), false);
+    private static int logsNear(CommandContext<ServerCommandSource> ctx) {
+        if (ctx.getSource().getEntity() == null) {
+            ctx.getSource().sendError(Text.literal("Dieser Befehl kann nur von einem Spieler ausgeführt werden!"));
+            return 0;
         }
 
-        return logs.size();
+        int radius = IntegerArgumentType.getInteger(ctx, "radius");
+        BlockPos center = ctx.getSource().getEntity().getBlockPos();
+        String dimension = ctx.getSource().getWorld().getRegistryKey().getValue().toString();
+        return runQuery(ctx, manager -> manager.getLogsNear(center, radius, dimension, MAX_RESULTS),
+                "Chest-Logs im Umkreis von " + radius + " Blöcken", "Keine Logs im Umkreis von " + radius + " Blöcken.");
     }
 
-    private static int recentLogs(CommandContext<ServerCommandSource> ctx, int count) {
-        ChestLogManager manager = Chestlogger.getLogManager();
+    private static int logsInArea(CommandContext<ServerCommandSource> ctx) {
+        try {
+            BlockPos from = BlockPosArgumentType.getBlockPos(ctx, "from");
+            BlockPos to = BlockPosArgumentType.getBlockPos(ctx, "to");
+            String dimension = ctx.getSource().getWorld().getRegistryKey().getValue().toString();
+            return runQuery(ctx, manager -> manager.getLogsInBox(from, to, dimension, MAX_RESULTS),
+                    "Chest-Logs zwischen " + from + " und " + to, "Keine Logs zwischen " + from + " und " + to);
+        } catch (Exception e) {
+            ctx.getSource().sendError(Text.literal("Fehler beim Abrufen der Positionen: " + e.getMessage()));
+            return 0;
+        }
+    }
 
-        if (manager == null) {
-            ctx.getSource().sendError(Text.literal("Log-Manager nicht verfügbar!"));
+    private static int logsSince(CommandContext<ServerCommandSource> ctx) {
+        String durationText = StringArgumentType.getString(ctx, "duration");
+        long duration = parseDuration(durationText);
+        if (duration <= 0) {
+            ctx.getSource().sendError(Text.literal("Ungültige Dauer: " + durationText + " (Beispiele: 30m, 2h, 1d12h)"));
             return 0;
         }
 
-        List<ChestAccessLog> logs = manager.getRecentLogs(count);
+        long now = System.currentTimeMillis();
+        return sendLogsBetween(ctx, now - duration, now, "seit " + durationText);
+    }
 
-        if (logs.isEmpty()) {
-            ctx.getSource().sendFeedback(() -> Text.literal("Keine Logs vorhanden."), false);
+    private static int logsBetween(CommandContext<ServerCommandSource> ctx) {
+        String range = StringArgumentType.getString(ctx, "range");
+        long[] window = parseTimeRange(range);
+        if (window == null) {
+            ctx.getSource().sendError(Text.literal("Ungültiger Zeitraum: " + range
+                    + " (Beispiele: 02:00 03:00, 17.10.2025 20.10.2025, 17.10.2025 02:00 - 17.10.2025 03:00)"));
             return 0;
         }
 
-        ctx.getSource().sendFeedback(() -> Text.literal("=== Letzte " + logs.size() + " Chest-Zugriffe ==="), false);
-        for (ChestAccessLog log : logs) {
-            ctx.getSource().sendFeedback(() -> Text.literal(log.toString()), false);
-        }
+        return sendLogsBetween(ctx, window[0], window[1], "zwischen " + range);
+    }
 
-        return logs.size();
+    private static int sendLogsBetween(CommandContext<ServerCommandSource> ctx, long from, long to, String description) {
+        return runQuery(ctx, manager -> manager.getLogsBetween(from, to, MAX_RESULTS),
+                "Chest-Logs " + description, "Keine Logs " + description + ".");
     }
 
-    private static int logsAtPosition(CommandContext<ServerCommandSource> ctx) {
+    private static int search(CommandContext<ServerCommandSource> ctx) {
+        String filters = StringArgumentType.getString(ctx, "filters");
+        LogQuery query;
         try {
-            BlockPos pos = BlockPosArgumentType.getBlockPos(ctx, "pos");
-            String dimension = ctx.getSource().getWorld().getRegistryKey().getValue().toString();
-            ChestLogManager manager = Chestlogger.getLogManager();
+            query = parseSearch(filters, ctx.getSource());
+        } catch (IllegalArgumentException e) {
+            ctx.getSource().sendError(Text.literal(e.getMessage() + " (" + SEARCH_EXAMPLE + ")"));
+            return 0;
+        }
 
-            if (manager == null) {
-                ctx.getSource().sendError(Text.literal("Log-Manager nicht verfügbar!"));
-                return 0;
-            }
+        return runQuery(ctx, manager -> manager.search(query, MAX_RESULTS),
+                "Suchergebnisse für " + filters, "Keine Logs für: " + filters);
+    }
 
-            List<ChestAccessLog> logs = manager.getLogsByPosition(pos, dimension);
+    private static LogQuery parseSearch(String filters, ServerCommandSource source) {
+        // Filters are key=value pairs separated by spaces, in any order
+        String playerName = null;
+        String itemId = null;
+        String itemText = null;
+        Boolean added = null;
+        String dimension = null;
+        int radius = 0;
+        long now = System.currentTimeMillis();
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+
+        for (String filter : filters.trim().split("\\s+")) {
+            int separator = filter.indexOf('=');
+            if (separator <= 0 || separator == filter.length() - 1) {
+                throw new IllegalArgumentException("Ungültiger Filter: " + filter);
+            }
 
-            if (logs.isEmpty()) {
-                ctx.getSource().sendFeedback(() -> Text.literal("Keine Logs für Position: " + pos), false);
-                return 0;
+            String key = filter.substring(0, separator).toLowerCase(Locale.ROOT);
+            String value = filter.substring(separator + 1);
+            switch (key) {
+                case "player" -> playerName = value;
+                case "item" -> {
+                    if (!value.contains("*")) {
+                        itemId = withNamespace(value);
+                    } else if (value.replace("*", "").isEmpty()) {
+                        throw new IllegalArgumentException("Ungültiger Filter: " + filter);
+                    } else {
+                        itemText = value.replace("*", "").toLowerCase(Locale.ROOT);
+                    }
+                }
+                case "action" -> added = switch (value.toLowerCase(Locale.ROOT)) {
+                    case "added", "add", "+" -> true;
+                    case "removed", "remove", "-" -> false;
+                    default -> throw new IllegalArgumentException("Ungültige Aktion: " + value + " (added oder removed)");
+                };
+                case "dim", "dimension" -> dimension = withNamespace(value);
+                case "radius" -> {
+                    try {
+                        radius = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        radius = -1;
+                    }
+                    if (radius < 1 || radius > MAX_SEARCH_RADIUS) {
+                        throw new IllegalArgumentException("Ungültiger Radius: " + value + " (1-" + MAX_SEARCH_RADIUS + ")");
+                    }
+                }
+                case "since", "until" -> {
+                    long duration = parseDuration(value);
+                    if (duration <= 0) {
+                        throw new IllegalArgumentException("Ungültige Dauer: " + value);
+                    }
+                    if (key.equals("since")) {
+                        from = now - duration;
+                    } else {
+                        to = now - duration;
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unbekannter Filter: " + key);
             }
+        }
 
-            ctx.getSource().sendFeedback(() -> Text.literal("=== Chest-Logs bei " + pos + " (" + logs.size() + " Einträge) ==="), false);
-            for (ChestAccessLog log : logs) {
-                ctx.getSource().sendFeedback(() -> Text.literal(log.toString()), false);
+        if (added != null && itemId == null && itemText == null) {
+            throw new IllegalArgumentException("action braucht einen item-Filter");
+        }
+        if (from > to) {
+            throw new IllegalArgumentException("since muss vor until liegen");
+        }
+
+        BlockPos min = null;
+        BlockPos max = null;
+        if (radius > 0) {
+            if (source.getEntity() == null) {
+                throw new IllegalArgumentException("radius kann nur von einem Spieler verwendet werden");
+            }
+            BlockPos center = source.getEntity().getBlockPos();
+            min = center.add(-radius, -radius, -radius);
+            max = center.add(radius, radius, radius);
+            if (dimension == null) {
+                dimension = source.getWorld().getRegistryKey().getValue().toString();
             }
+        }
 
-            return logs.size();
-        } catch (Exception e) {
-            ctx.getSource().sendError(Text.literal("Fehler beim Abrufen der Position: " + e.getMessage()));
+        return new LogQuery(playerName, null, itemId, itemText, added, dimension, min, max, from, to);
+    }
+
+    private static String withNamespace(String id) {
+        return id.contains(":") ? id.toLowerCase(Locale.ROOT) : "minecraft:" + id.toLowerCase(Locale.ROOT);
+    }
+
+    private static int runQuery(CommandContext<ServerCommandSource> ctx, Function<ChestLogManager, List<ChestAccessLog>> query,
+                                String title, String emptyMessage) {
+        return runQuery(ctx, query, logs -> title, emptyMessage);
+    }
+
+    private static int runQuery(CommandContext<ServerCommandSource> ctx, Function<ChestLogManager, List<ChestAccessLog>> query,
+                                Function<List<ChestAccessLog>, String> title, String emptyMessage) {
+        ServerCommandSource source = ctx.getSource();
+        ChestLogManager manager = Chestlogger.getLogManager();
+
+        if (manager == null) {
+            source.sendError(Text.literal("Log-Manager nicht verfügbar!"));
             return 0;
         }
-    }
 
-    private static int logsHere(CommandContext<ServerCommandSource> ctx) {
-        try {
-            if (ctx.getSource().getEntity() == null) {
-                ctx.getSource().sendError(Text.literal("Dieser Befehl kann nur von einem Spieler ausgeführt werden!"));
-                return 0;
+        // The scan runs on the query thread, only the first page is rendered back on the server thread
+        MinecraftServer server = source.getServer();
+        manager.submitQuery(query).whenComplete((logs, error) -> server.execute(() -> {
+            if (error != null) {
+                source.sendError(Text.literal("Fehler bei der Abfrage: " + error.getMessage()));
+                return;
+            }
+            if (logs.isEmpty()) {
+                source.sendFeedback(() -> Text.literal(emptyMessage), false);
+                return;
             }
 
-            // Get player position and check the block they're standing on or looking at
-            BlockPos playerPos = ctx.getSource().getEntity().getBlockPos();
-            String dimension = ctx.getSource().getWorld().getRegistryKey().getValue().toString();
+            // Every query stops at MAX_RESULTS, so a full list means older matches were left out
+            String fullTitle = title.apply(logs) + (logs.size() >= MAX_RESULTS ? " (neueste " + MAX_RESULTS + ")" : "");
+            long now = System.currentTimeMillis();
+            cursors.values().removeIf(old -> old.isExpired(now)); // Sources that never page again
+            LogCursor cursor = new LogCursor(fullTitle, logs, now);
+            cursors.put(source.getName(), cursor);
+            sendPage(source, cursor, 1);
+        }));
+        return 1;
+    }
 
-            // Check block below player (if standing on container)
-            BlockPos checkPos = playerPos.down();
+    private static int showPage(CommandContext<ServerCommandSource> ctx) {
+        int page = IntegerArgumentType.getInteger(ctx, "page");
+        LogCursor cursor = cursors.get(ctx.getSource().getName());
+        if (cursor != null && cursor.isExpired(System.currentTimeMillis())) {
+            cursors.remove(ctx.getSource().getName());
+            cursor = null;
+        }
 
-            ChestLogManager manager = Chestlogger.getLogManager();
-            if (manager == null) {
-                ctx.getSource().sendError(Text.literal("Log-Manager nicht verfügbar!"));
-                return 0;
-            }
+        if (cursor == null) {
+            ctx.getSource().sendError(Text.literal("Keine Abfrage zum Blättern vorhanden."));
+            return 0;
+        }
+        if (page > cursor.getPageCount()) {
+            ctx.getSource().sendError(Text.literal("Seite " + page + " existiert nicht (" + cursor.getPageCount() + " Seiten)."));
+            return 0;
+        }
 
-            List<ChestAccessLog> logs = manager.getLogsByPosition(checkPos, dimension);
+        sendPage(ctx.getSource(), cursor, page);
+        return page;
+    }
 
-            // If no logs at feet, check surrounding blocks
-            if (logs.isEmpty()) {
-                for (BlockPos offset : new BlockPos[]{
-                        playerPos,
-                        playerPos.north(),
-                        playerPos.south(),
-                        playerPos.east(),
-                        playerPos.west()
-                }) {
-                    logs = manager.getLogsByPosition(offset, dimension);
-                    if (!logs.isEmpty()) {
-                        checkPos = offset;
-                        break;
-                    }
-                }
+    private static void sendPage(ServerCommandSource source, LogCursor cursor, int page) {
+        int pageCount = cursor.getPageCount();
+        List<ChestAccessLog> logs = cursor.logs();
+        source.sendFeedback(() -> Text.literal("=== " + cursor.title() + " (" + logs.size() + " Einträge, Seite "
+                + page + "/" + pageCount + ") ==="), false);
+        for (int i = (page - 1) * PAGE_SIZE; i < Math.min(page * PAGE_SIZE, logs.size()); i++) {
+            ChestAccessLog log = logs.get(i);
+            source.sendFeedback(() -> Text.literal(log.toString()), false);
+        }
+
+        if (pageCount > 1) {
+            MutableText navigation = Text.empty();
+            navigation.append(pageLink("« Zurück", page - 1, page > 1));
+            navigation.append(Text.literal(" | ").formatted(Formatting.DARK_GRAY));
+            navigation.append(pageLink("Weiter »", page + 1, page < pageCount));
+            source.sendFeedback(() -> navigation, false);
+        }
+    }
+
+    private static Text pageLink(String label, int page, boolean enabled) {
+        if (!enabled) {
+            return Text.literal("[" + label + "]").formatted(Formatting.DARK_GRAY);
+        }
+
+        String command = "/chestlog page " + page;
+        return Text.literal("[" + label + "]").styled(style -> style
+                .withColor(Formatting.AQUA)
+                .withClickEvent(new ClickEvent.RunCommand(command))
+                .withHoverEvent(new HoverEvent.ShowText(Text.literal("Seite " + page))));
+    }
+
+    private static long parseDuration(String text) {
+        // Accepts combinations like "45m", "2h" or "1d12h"
+        Matcher matcher = DURATION_PART.matcher(text.toLowerCase(Locale.ROOT));
+        long total = 0;
+        int matchedLength = 0;
+        while (matcher.find()) {
+            if (matcher.start() != matchedLength) {
+                return -1;
             }
+            long amount = Long.parseLong(matcher.group(1));
+            total += switch (matcher.group(2)) {
+                case "s" -> TimeUnit.SECONDS.toMillis(amount);
+                case "m" -> TimeUnit.MINUTES.toMillis(amount);
+                case "h" -> TimeUnit.HOURS.toMillis(amount);
+                case "d" -> TimeUnit.DAYS.toMillis(amount);
+                default -> TimeUnit.DAYS.toMillis(amount * 7);
+            };
+            matchedLength = matcher.end();
+        }
+        return matchedLength == text.length() ? total : -1;
+    }
 
-            if (logs.isEmpty()) {
-                ctx.getSource().sendFeedback(() -> Text.literal("Keine Container in deiner Nähe gefunden oder keine Logs vorhanden."), false);
-                return 0;
+    private static long[] parseTimeRange(String range) {
+        String fromText;
+        String toText;
+        String[] parts = range.trim().split("\\s+-\\s+");
+        if (parts.length == 2) {
+            fromText = parts[0];
+            toText = parts[1];
+        } else {
+            String[] tokens = range.trim().split("\\s+");
+            if (tokens.length == 2) {
+                fromText = tokens[0];
+                toText = tokens[1];
+            } else if (tokens.length == 4) {
+                fromText = tokens[0] + " " + tokens[1];
+                toText = tokens[2] + " " + tokens[3];
+            } else {
+                return null;
             }
+        }
+
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime from = parseTime(fromText, now, false);
+        ZonedDateTime to = parseTime(toText, now, true);
+        if (from == null || to == null || !to.isAfter(from)) {
+            return null;
+        }
+        return new long[]{from.toInstant().toEpochMilli(), to.toInstant().toEpochMilli()};
+    }
 
-            BlockPos finalCheckPos = checkPos;
-            int finalLogCount = logs.size();
-            ctx.getSource().sendFeedback(() -> Text.literal("=== Chest-Logs bei " + finalCheckPos + " (" + finalLogCount + " Einträge) ==="), false);
-            for (ChestAccessLog log : logs) {
-                ctx.getSource().sendFeedback(() -> Text.literal(log.toString()), false);
+    private static ZonedDateTime parseTime(String text, ZonedDateTime now, boolean endOfRange) {
+        try {
+            if (text.contains(".") && text.contains(":")) {
+                return LocalDateTime.parse(text, DATE_TIME_FORMAT).atZone(now.getZone());
+            }
+            if (text.contains(".")) {
+                // A plain date covers the whole day
+                LocalDate date = LocalDate.parse(text, DATE_FORMAT);
+                return (endOfRange ? date.plusDays(1) : date).atStartOfDay(now.getZone());
             }
 
-            return logs.size();
-        } catch (Exception e) {
-            ctx.getSource().sendError(Text.literal("Fehler: " + e.getMessage()));
-            return 0;
+            // A plain time means its most recent occurrence, "02:00" in the morning is last night
+            ZonedDateTime time = LocalTime.parse(text, TIME_FORMAT).atDate(now.toLocalDate()).atZone(now.getZone());
+            return time.isAfter(now) ? time.minusDays(1) : time;
+        } catch (DateTimeParseException e) {
+            return null;
         }
     }
 
@@ -205,28 +549,81 @@ public class ChestLogCommands {
         }
 
         long cutoffTimestamp = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days);
-        int beforeCount = manager.getLogCount();
-        manager.clearOldLogs(cutoffTimestamp);
-        int afterCount = manager.getLogCount();
-        int deletedCount = beforeCount - afterCount;
+        ServerCommandSource source = ctx.getSource();
+        MinecraftServer server = source.getServer();
+        // The days are dropped on the query thread, the result is reported back on the server thread
+        manager.clearOldLogs(cutoffTimestamp).whenComplete((deletedCount, error) -> server.execute(() -> {
+            if (error != null) {
+                source.sendError(Text.literal("Fehler beim Löschen: " + error.getMessage()));
+                return;
+            }
+            source.sendFeedback(() -> Text.literal(deletedCount + " Logs älter als " + days + " Tage wurden gelöscht."), true);
+        }));
 
-        ctx.getSource().sendFeedback(() -> Text.literal(deletedCount + " Logs älter als " + days + " Tage wurden gelöscht."), true);
+        return 1;
+    }
 
-        return deletedCount;
+    private static int reloadConfig(CommandContext<ServerCommandSource> ctx) {
+        Config.load(ctx.getSource().getServer().getRunDirectory().resolve("config"));
+        ContainerBlocks.rebuild();
+        ctx.getSource().sendFeedback(() -> Text.literal("Chest Logger Konfiguration neu geladen."), true);
+        return 1;
     }
 
-    private static int showStats(CommandContext<ServerCommandSource> ctx) {
+    private static int showStats(CommandContext<ServerCommandSource> ctx, int top) {
+        ServerCommandSource source = ctx.getSource();
         ChestLogManager manager = Chestlogger.getLogManager();
 
         if (manager == null) {
-            ctx.getSource().sendError(Text.literal("Log-Manager nicht verfügbar!"));
+            source.sendError(Text.literal("Log-Manager nicht verfügbar!"));
             return 0;
         }
 
         int totalLogs = manager.getLogCount();
-        ctx.getSource().sendFeedback(() -> Text.literal("=== Chest Logger Statistiken ==="), false);
-        ctx.getSource().sendFeedback(() -> Text.literal("Gesamt Logs: " + totalLogs), false);
+        int queueDepth = manager.getWriterQueueDepth();
+        long since = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(23);
+
+        // Answered from the rollups kept with every day: the records are not read, but each ranking goes over all
+        // distinct players, items or containers in them
+        MinecraftServer server = source.getServer();
+        manager.submitQuery(m -> {
+            LogStats stats = m.getStats();
+            List<String> lines = new ArrayList<>();
+            lines.add("=== Chest Logger Statistiken ===");
+            lines.add("Gesamt Logs: " + totalLogs);
+            lines.add("Ausstehende Schreibvorgänge: " + queueDepth);
+            addRanking(lines, "Aktivste Spieler", stats.getTopPlayers(top), "Zugriffe");
+            addRanking(lines, "Meistbewegte Items", stats.getTopItems(top), "Stück");
+            addRanking(lines, "Meistgenutzte Container", stats.getTopContainers(top), "Zugriffe");
+
+            StringBuilder hourly = new StringBuilder("Zugriffe pro Stunde (letzte 24h):");
+            for (int accesses : stats.getHourlyAccesses(since, 24)) {
+                hourly.append(' ').append(accesses);
+            }
+            lines.add(hourly.toString());
+            return lines;
+        }).whenComplete((lines, error) -> server.execute(() -> {
+            if (error != null) {
+                source.sendError(Text.literal("Fehler bei der Abfrage: " + error.getMessage()));
+                return;
+            }
+            for (String line : lines) {
+                source.sendFeedback(() -> Text.literal(line), false);
+            }
+        }));
 
         return 1;
     }
+
+    private static void addRanking(List<String> lines, String title, List<LogStats.Ranked> ranking, String unit) {
+        if (ranking.isEmpty()) {
+            return;
+        }
+
+        lines.add(title + ":");
+        for (int i = 0; i < ranking.size(); i++) {
+            LogStats.Ranked entry = ranking.get(i);
+            lines.add("  " + (i + 1) + ". " + entry.name() + " - " + entry.count() + " " + unit);
+        }
+    }
 }
@@ -1,8 +1,10 @@
 package com.redeagle.chestlogger;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtList;
 import net.minecraft.nbt.NbtSizeTracker;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
@@ -10,40 +12,106 @@ import net.minecraft.world.level.storage.LevelStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class ChestLogManager {
     private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
-    private static final String LOG_FILE_NAME = "chest_logs.dat";
+    private static final String LOG_FILE_NAME = "chest_logs.dat"; // Legacy single-file format, migrated on startup
+    private static final String LOG_DIRECTORY_NAME = "chest_logs";
     private static final int SAVE_INTERVAL_TICKS = 600; // Save every 30 seconds (20 ticks = 1 second)
     private static final int MAX_LOGS_BEFORE_SAVE = 50; // Save when we have 50+ unsaved logs
+    private static final int RETENTION_CHECK_INTERVAL_TICKS = 72000; // Drop expired days once an hour
+    private static final int MAX_LOADED_PARTITIONS = 8; // Days kept materialized after a query touched them
+    private static final int MAX_INDEXED_PARTITIONS = 32; // Sealed days whose postings stay in memory after a query
+    private static final int MAX_MAPPED_PARTITIONS = 16; // Days whose segment mappings are kept for the next query
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final int MIN_POSTINGS_FOR_BOX = 64; // Below this the box is checked per record instead
 
     private final File logFile;
-    private final List<ChestAccessLog> logs;
-    private final ConcurrentLinkedQueue<ChestAccessLog> unsavedLogs;
+    private final Path journalDir;
+    private LogJournal journal;
+    private LogWriter writer;
+    // Partitions and the loaded days are guarded by lock: queries hold it on the query thread while they run,
+    // the server thread only takes it when it is free; new logs go to the writer right away and only wait in
+    // incomingLogs for their index entries
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ExecutorService queryExecutor;
+    private final ParallelLogScan parallelScan; // Searches no index can answer, fanned out over the days
+    private final NavigableMap<Long, LogPartition> partitions; // Key: day, see LogPartition.dayOf
+    private final List<ChestAccessLog> incomingLogs = new ArrayList<>(); // Only touched on the server thread
+    private boolean sealPending = false; // A new day started, the days before it are persisted once incomingLogs is empty
+    private CompletableFuture<?> indexRequest; // Reads the index of a sealed day a late log waits for, see requestIndex
+    private volatile boolean clearing = false; // clearAllLogs is waiting for the query thread, see clearPartitions
+    private final List<ChestAccessLog> unsavedLogs; // Only touched on the server thread
+    private final ArrayDeque<LogPartition> loadedPartitions = new ArrayDeque<>(); // Least recently loaded first
+    private final ArrayDeque<LogPartition> indexedPartitions = new ArrayDeque<>(); // Least recently indexed first
+    private final ArrayDeque<LogPartition> mappedPartitions = new ArrayDeque<>(); // Least recently mapped first
+    private volatile int logCount = 0;
+    private final LogStats totalStats = new LogStats(); // Sum of the rollups of every partition
+    // LogIndex.playerKey -> UUID the name was last logged with, from every day's summary; guarded by lock
+    private final Map<String, String> playerUuids = new HashMap<>();
     private int ticksSinceLastSave = 0;
+    private int ticksSinceRetentionCheck = 0;
 
     public ChestLogManager(MinecraftServer server) {
         Path worldDir = server.getRunDirectory();
         Path logPath = worldDir.resolve(LOG_FILE_NAME);
         this.logFile = logPath.toFile();
+        this.journalDir = worldDir.resolve(LOG_DIRECTORY_NAME);
 
-        LOGGER.info("ChestLogManager initialized with log file: {}", logFile.getAbsolutePath());
+        LOGGER.info("ChestLogManager initialized with log directory: {}", journalDir.toAbsolutePath());
 
-        this.logs = new ArrayList<>();
-        this.unsavedLogs = new ConcurrentLinkedQueue<>();
+        this.partitions = new TreeMap<>();
+        this.unsavedLogs = new ArrayList<>();
         loadLogs();
+
+        // The journal belongs to the writer thread from here on
+        if (journal != null) {
+            this.writer = new LogWriter(journal);
+        }
+
+        if (Config.logRetentionDays > 0) {
+            dropDaysBefore(getRetentionCutoff()); // No query can be running yet
+        }
+        persistSealedIndexes();
+        trimLoadedPartitions(null); // Days read to rebuild their index are not needed in memory anymore
+        trimIndexedPartitions(null);
+
+        this.queryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChestLogger-Query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.parallelScan = new ParallelLogScan();
     }
 
     public void addLog(ChestAccessLog log) {
-        logs.add(log);
+        // Saved no matter if a query is running, only adding it to its partition may have to wait
         unsavedLogs.add(log);
+        incomingLogs.add(log);
+        applyIncomingLogs(false);
 
         // Only save immediately if we have many unsaved logs
         if (unsavedLogs.size() >= MAX_LOGS_BEFORE_SAVE) {
@@ -51,7 +119,62 @@ public class ChestLogManager {
         }
     }
 
+    public <T> CompletableFuture<T> submitQuery(Function<ChestLogManager, T> query) {
+        // Queries run one at a time off the server thread, see lock
+        return CompletableFuture.supplyAsync(() -> {
+            lock.lock();
+            try {
+                return query.apply(this);
+            } finally {
+                lock.unlock();
+            }
+        }, queryExecutor);
+    }
+
+    private void applyIncomingLogs(boolean wait) {
+        if (incomingLogs.isEmpty() || clearing) {
+            return;
+        }
+        // While a query runs the logs wait here, the server thread never blocks on a scan
+        if (wait) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return;
+        }
+
+        try {
+            int applied = 0;
+            for (; applied < incomingLogs.size(); applied++) {
+                ChestAccessLog log = incomingLogs.get(applied);
+                LogPartition partition = partitions.get(LogPartition.dayOf(log.getTimestamp()));
+                if (!wait && partition != null && !partition.hasIndex()) {
+                    // A sealed day, e.g. a record from just before midnight; the rest keeps its order and waits
+                    requestIndex(partition);
+                    break;
+                }
+                sealPending |= addToPartition(log);
+            }
+            incomingLogs.subList(0, applied).clear();
+            if (sealPending && incomingLogs.isEmpty()) {
+                // Only once every pending log is indexed, an index file must cover all of its day's records on disk
+                persistSealedIndexes();
+                sealPending = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void requestIndex(LogPartition partition) {
+        // Reading the postings may wait for the writer or read the whole day, so it is left to the query thread;
+        // the next tick finds the index in memory
+        if (indexRequest == null || indexRequest.isDone()) {
+            indexRequest = submitQuery(manager -> getIndex(partition));
+        }
+    }
+
     public void tick() {
+        applyIncomingLogs(false);
         ticksSinceLastSave++;
 
         // Save periodically if there are unsaved logs
@@ -59,103 +182,700 @@ public class ChestLogManager {
             saveLogsAsync();
             ticksSinceLastSave = 0;
         }
+
+        ticksSinceRetentionCheck++;
+        if (ticksSinceRetentionCheck >= RETENTION_CHECK_INTERVAL_TICKS) {
+            applyRetention();
+            ticksSinceRetentionCheck = 0;
+        }
     }
 
     public void flush() {
-        // Force save all unsaved logs (e.g., on server shutdown)
-        if (!unsavedLogs.isEmpty()) {
-            saveLogs();
+        // Force save all unsaved logs (e.g., on server shutdown) and wait until they are on disk
+        if (writer == null) {
+            return;
         }
+
+        // Logs still waiting for their index entries are in unsavedLogs as well
+        saveLogsAsync();
+        writer.awaitIdle();
     }
 
+    public void close() {
+        // Nobody is left to read the results: queued queries are dropped, a running one is interrupted and
+        // stops before its next day, scans on the pool stop at their next record
+        parallelScan.shutdown();
+        queryExecutor.shutdownNow();
+
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (locked) {
+            try {
+                if (clearing) {
+                    clearPartitions(); // Its query was dropped with the executor above
+                }
+                applyIncomingLogs(true);
+                for (LogPartition partition : partitions.values()) {
+                    persistIndex(partition);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            // The records still reach the disk below; index files that do not cover them are rebuilt on startup
+            LOGGER.warn("Chest log query did not finish within {} seconds, index files are not updated",
+                    SHUTDOWN_TIMEOUT_SECONDS);
+        }
+        flush();
+        if (writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+    }
+
+    public int getWriterQueueDepth() {
+        return writer != null ? writer.getQueueDepth() : 0;
+    }
+
+    // The queries below expect lock to be held, run them through submitQuery
     public List<ChestAccessLog> getAllLogs() {
-        return new ArrayList<>(logs);
+        List<ChestAccessLog> result = new ArrayList<>(logCount);
+        for (LogPartition partition : partitions.values()) {
+            result.addAll(getLogs(partition));
+        }
+        return result;
     }
 
-    public List<ChestAccessLog> getLogsByPlayer(String playerName) {
-        return logs.stream()
-                .filter(log -> log.getPlayerName().equalsIgnoreCase(playerName))
-                .collect(Collectors.toList());
+    public List<ChestAccessLog> getLogsByPlayer(String playerName, int limit) {
+        // Only the player's own postings are touched, no matter how much history other players have
+        String playerUuid = resolvePlayer(playerName);
+        return collectNewest(partitions, partition -> {
+            if (!partition.mightContainPlayer(playerUuid, playerName)) {
+                return null; // Ruled out by the day's filter, its index is not even read
+            }
+            return getIndex(partition).getPlayerPostings(playerUuid, playerName);
+        }, Long.MIN_VALUE, limit);
+    }
+
+    public List<ChestAccessLog> getLogsByItem(String itemId, String playerName, long since, int limit) {
+        // playerName may be null to include every player, since may be 0 to include all history
+        String playerUuid = playerName != null ? resolvePlayer(playerName) : null;
+        return collectNewest(partitions.tailMap(LogPartition.dayOf(since), true), partition -> {
+            if (!partition.mightContainItem(itemId)
+                    || playerName != null && !partition.mightContainPlayer(playerUuid, playerName)) {
+                return null;
+            }
+
+            LogIndex index = getIndex(partition);
+            IntList postings = index.getItemPostings(itemId);
+            if (playerName != null && !postings.isEmpty()) {
+                postings = LogIndex.intersect(postings, index.getPlayerPostings(playerUuid, playerName));
+            }
+            return postings;
+        }, since, limit);
+    }
+
+    public List<ChestAccessLog> getLogsByPosition(BlockPos pos, String dimension, int limit) {
+        return collectNewest(partitions, partition -> partition.mightContainContainer(pos, dimension)
+                ? getIndex(partition).getPositionPostings(pos, dimension) : null, Long.MIN_VALUE, limit);
+    }
+
+    public List<ChestAccessLog> getLogsInBox(BlockPos corner1, BlockPos corner2, String dimension, int limit) {
+        BlockPos min = new BlockPos(Math.min(corner1.getX(), corner2.getX()),
+                Math.min(corner1.getY(), corner2.getY()), Math.min(corner1.getZ(), corner2.getZ()));
+        BlockPos max = new BlockPos(Math.max(corner1.getX(), corner2.getX()),
+                Math.max(corner1.getY(), corner2.getY()), Math.max(corner1.getZ(), corner2.getZ()));
+
+        IntArrayList offsets = new IntArrayList(); // Refilled per day, each day is collected before the next lookup
+        return collectNewest(partitions, partition -> {
+            if (!partition.mightContainBox(dimension, min, max)) {
+                return null;
+            }
+
+            offsets.clear();
+            getIndex(partition).forEachContainerInBox(dimension, min, max, (packedPos, postings) -> offsets.addAll(postings));
+            // Postings of different containers interleave, sort them back into the order they were logged
+            IntArrays.quickSort(offsets.elements(), 0, offsets.size());
+            return offsets;
+        }, Long.MIN_VALUE, limit);
     }
 
-    public List<ChestAccessLog> getLogsByPosition(BlockPos pos, String dimension) {
-        return logs.stream()
-                .filter(log -> log.getPosition().equals(pos) && log.getDimension().equals(dimension))
-                .collect(Collectors.toList());
+    public List<ChestAccessLog> getLogsNear(BlockPos center, int radius, String dimension, int limit) {
+        return getLogsInBox(center.add(-radius, -radius, -radius), center.add(radius, radius, radius), dimension, limit);
+    }
+
+    public List<ChestAccessLog> getLogsBetween(long from, long to, int limit) {
+        // A search without filters: only the days touching the window are scanned, and inside them the sparse
+        // index skips ahead
+        return search(new LogQuery(null, null, null, null, null, null, null, null, from, to), limit);
+    }
+
+    private List<ChestAccessLog> collectNewest(NavigableMap<Long, LogPartition> days, Function<LogPartition, IntList> lookup,
+                                               long since, int limit) {
+        // lookup gives a day's postings, or null when its filter rules it out; the newest days go first and only
+        // the newest postings of a day are decoded, records of a day are in the order they were logged
+        List<List<ChestAccessLog>> dayResults = new ArrayList<>();
+        int found = 0;
+        for (LogPartition partition : days.descendingMap().values()) {
+            if (found >= limit || Thread.currentThread().isInterrupted()) {
+                break; // Interrupted by close
+            }
+
+            IntList postings = lookup.apply(partition);
+            if (postings == null || postings.isEmpty()) {
+                continue; // Days without matches are never read from disk
+            }
+
+            List<ChestAccessLog> dayResult = new ArrayList<>();
+            collect(partition, postings.subList(Math.max(0, postings.size() - (limit - found)), postings.size()), since, dayResult);
+            dayResults.add(dayResult);
+            found += dayResult.size();
+        }
+        return oldestFirst(dayResults, found, limit);
+    }
+
+    private static List<ChestAccessLog> oldestFirst(List<List<ChestAccessLog>> dayResults, int found, int limit) {
+        // dayResults are newest day first, the newest records up to limit are kept
+        List<ChestAccessLog> result = new ArrayList<>(Math.min(found, limit));
+        for (int i = dayResults.size() - 1; i >= 0; i--) {
+            result.addAll(dayResults.get(i));
+        }
+        return result.size() > limit ? new ArrayList<>(result.subList(result.size() - limit, result.size())) : result;
+    }
+
+    public List<ChestAccessLog> search(LogQuery query, int limit) {
+        // Returns the newest matches up to limit, oldest first like the other queries
+        if (query.playerName() != null) {
+            query = query.withPlayerUuid(resolvePlayer(query.playerName()));
+        }
+        long from = query.from();
+        long to = query.to();
+        NavigableMap<Long, LogPartition> days = partitions.subMap(LogPartition.dayOf(from), true, LogPartition.dayOf(to), true);
+        if (!hasIndexedFilter(query)) {
+            // Nothing to look up (e.g. a fragment of an item id), so every record in the window is decoded
+            // and the days are spread over the scan pool instead of the query thread
+            List<ParallelLogScan.Source> sources = new ArrayList<>();
+            for (LogPartition partition : days.values()) {
+                if (partition.overlaps(from, to) && mightMatch(partition, query)) {
+                    sources.add(getSource(partition));
+                }
+            }
+            return parallelScan.scan(sources, from, to, query::matches, limit);
+        }
+
+        // Each indexed filter gives a posting list, they are intersected smallest first so only records
+        // matching all of them are decoded; the newest days go first so older ones can be left out
+        List<List<ChestAccessLog>> dayResults = new ArrayList<>();
+        int found = 0;
+        for (LogPartition partition : days.descendingMap().values()) {
+            if (found >= limit || Thread.currentThread().isInterrupted()) {
+                break; // Interrupted by close
+            }
+            if (!partition.overlaps(from, to) || !mightMatch(partition, query)) {
+                continue;
+            }
+
+            LogIndex index = getIndex(partition);
+            List<IntList> candidates = getCandidatePostings(index, query);
+            candidates.sort(Comparator.comparingInt(IntList::size));
+            IntList postings = candidates.get(0);
+            for (int i = 1; i < candidates.size() && !postings.isEmpty(); i++) {
+                postings = LogIndex.intersect(postings, candidates.get(i));
+            }
+
+            // Offsets before the window are dropped without looking at their records
+            int first = lowerBound(postings, index.getFirstOffsetAtOrAfter(from));
+            if (first < postings.size()) {
+                List<ChestAccessLog> dayResult = new ArrayList<>();
+                collect(partition, postings.subList(first, postings.size()), from, query::matches, dayResult);
+                dayResults.add(dayResult);
+                found += dayResult.size();
+            }
+        }
+
+        return oldestFirst(dayResults, found, limit);
+    }
+
+    private static boolean hasIndexedFilter(LogQuery query) {
+        // Matches getCandidatePostings: a box alone is always looked up
+        return query.playerName() != null || query.itemId() != null || query.hasBox() && query.dimension() != null;
+    }
+
+    private static boolean mightMatch(LogPartition partition, LogQuery query) {
+        return (query.playerName() == null || partition.mightContainPlayer(query.playerUuid(), query.playerName()))
+                && (query.itemId() == null || partition.mightContainItem(query.itemId()))
+                && (!query.hasBox() || query.dimension() == null || partition.mightContainBox(query.dimension(), query.min(), query.max()));
+    }
+
+    private static List<IntList> getCandidatePostings(LogIndex index, LogQuery query) {
+        List<IntList> candidates = new ArrayList<>();
+        int smallest = Integer.MAX_VALUE;
+        if (query.playerName() != null) {
+            IntList postings = index.getPlayerPostings(query.playerUuid(), query.playerName());
+            candidates.add(postings);
+            smallest = postings.size();
+        }
+        if (query.itemId() != null) {
+            IntList postings = query.added() != null
+                    ? index.getItemPostings(query.itemId(), query.added())
+                    : index.getItemPostings(query.itemId());
+            candidates.add(postings);
+            smallest = Math.min(smallest, postings.size());
+        }
+
+        // Gathering a box touches every container in it, for a handful of candidates the box check
+        // in LogQuery.matches is cheaper
+        if (query.hasBox() && query.dimension() != null && smallest > MIN_POSTINGS_FOR_BOX) {
+            IntArrayList offsets = new IntArrayList();
+            index.forEachContainerInBox(query.dimension(), query.min(), query.max(), (packedPos, postings) -> offsets.addAll(postings));
+            IntArrays.quickSort(offsets.elements(), 0, offsets.size());
+            candidates.add(offsets);
+        }
+        return candidates;
+    }
+
+    private String resolvePlayer(String playerName) {
+        // null if no record of the name has a UUID, then only its records from before UUIDs were logged exist
+        return playerUuids.get(LogIndex.playerKey(playerName));
+    }
+
+    private static int lowerBound(IntList postings, int offset) {
+        int low = 0;
+        int high = postings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.getInt(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     public List<ChestAccessLog> getRecentLogs(int count) {
-        int size = logs.size();
-        int startIndex = Math.max(0, size - count);
-        return new ArrayList<>(logs.subList(startIndex, size));
+        // Walk the days backwards so only the newest partitions are touched
+        List<ChestAccessLog> result = new ArrayList<>(count);
+        for (LogPartition partition : partitions.descendingMap().values()) {
+            List<ChestAccessLog> partitionLogs = partition.getLogs();
+            if (partitionLogs != null) {
+                for (int i = partitionLogs.size() - 1; i >= 0 && result.size() < count; i--) {
+                    result.add(partitionLogs.get(i));
+                }
+            }
+
+            int onDisk = partition.getFirstLogOffset();
+            if (result.size() < count && onDisk > 0) {
+                // Only the tail of what is on disk is decoded, then added newest first like the records above
+                List<ChestAccessLog> newest = new ArrayList<>();
+                getMapped(partition).scan(Math.max(0, onDisk - (count - result.size())),
+                        (offset, record) -> offset < onDisk && newest.add(record.toLog()));
+                for (int i = newest.size() - 1; i >= 0 && result.size() < count; i--) {
+                    result.add(newest.get(i));
+                }
+            }
+            if (result.size() >= count) {
+                break;
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public CompletableFuture<Integer> clearOldLogs(long olderThanTimestamp) {
+        // Logs are kept in whole days, so the day containing the cutoff is kept completely
+        long firstKeptDay = LogPartition.dayOf(olderThanTimestamp);
+        incomingLogs.removeIf(log -> LogPartition.dayOf(log.getTimestamp()) < firstKeptDay);
+        unsavedLogs.removeIf(log -> LogPartition.dayOf(log.getTimestamp()) < firstKeptDay);
+
+        // The days are dropped on the query thread, behind a running query instead of blocking the server on it
+        return submitQuery(manager -> dropDaysBefore(olderThanTimestamp));
     }
 
-    public void clearOldLogs(long olderThanTimestamp) {
-        logs.removeIf(log -> log.getTimestamp() < olderThanTimestamp);
-        saveLogs();
-        LOGGER.info("Cleared old chest logs older than timestamp: {}", olderThanTimestamp);
+    private int dropDaysBefore(long olderThanTimestamp) {
+        // Expects lock to be held; returns the number of logs dropped
+        long firstKeptDay = LogPartition.dayOf(olderThanTimestamp);
+        NavigableMap<Long, LogPartition> expired = partitions.headMap(firstKeptDay, false);
+        int droppedDays = expired.size();
+        int droppedLogs = 0;
+        for (LogPartition partition : expired.values()) {
+            droppedLogs += partition.size();
+            totalStats.subtract(getDayStats(partition)); // Read before the files are deleted below
+        }
+        logCount -= droppedLogs;
+        expired.clear();
+        loadedPartitions.removeIf(partition -> partition.getDay() < firstKeptDay);
+        indexedPartitions.removeIf(partition -> partition.getDay() < firstKeptDay);
+        mappedPartitions.removeIf(partition -> partition.getDay() < firstKeptDay);
+
+        // Also retries files an earlier call could not delete, e.g. while they were still mapped
+        if (writer != null) {
+            writer.submit(journal -> journal.dropBefore(firstKeptDay));
+        }
+        if (droppedDays > 0) {
+            LOGGER.info("Cleared {} days of chest logs older than timestamp: {}", droppedDays, olderThanTimestamp);
+        }
+        return droppedLogs;
     }
 
     public void clearAllLogs() {
-        logs.clear();
-        saveLogs();
+        incomingLogs.clear();
+        unsavedLogs.clear();
+        if (writer != null) {
+            writer.submit(LogJournal::clear); // Logs queued before go with the files, the ones after are kept
+        }
+
+        // The partitions are cleared behind a running query, new logs wait in incomingLogs until then
+        clearing = true;
+        submitQuery(manager -> {
+            clearPartitions();
+            return null;
+        });
         LOGGER.info("Cleared all chest logs");
     }
 
-    private void loadLogs() {
-        if (!logFile.exists()) {
-            LOGGER.info("No existing chest log file found. Starting fresh.");
-            return;
+    private void clearPartitions() {
+        partitions.clear();
+        loadedPartitions.clear();
+        indexedPartitions.clear();
+        mappedPartitions.clear();
+        logCount = 0;
+        totalStats.clear();
+        playerUuids.clear();
+        clearing = false;
+    }
+
+    private void applyRetention() {
+        if (Config.logRetentionDays <= 0) {
+            return; // Keep logs forever
         }
 
-        try {
-            NbtCompound rootTag = NbtIo.readCompressed(logFile.toPath(), NbtSizeTracker.ofUnlimitedBytes());
-            if (rootTag.contains("Logs")) {
-                rootTag.getList("Logs").ifPresent(logsList -> {
-                    for (int i = 0; i < logsList.size(); i++) {
-                        logsList.getCompound(i).ifPresent(logTag ->
-                            logs.add(ChestAccessLog.fromNBT(logTag))
-                        );
-                    }
-                });
+        clearOldLogs(getRetentionCutoff());
+    }
+
+    private static long getRetentionCutoff() {
+        return System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Config.logRetentionDays);
+    }
+
+    private boolean addToPartition(ChestAccessLog log) {
+        // Returns whether the log started a new day, the previous days will not change anymore then
+        long day = LogPartition.dayOf(log.getTimestamp());
+        LogPartition partition = partitions.get(day);
+        boolean dayStarted = partition == null;
+        if (dayStarted) {
+            partition = new LogPartition(day);
+            partitions.put(day, partition);
+            markLoaded(partition);
+        } else if (!partition.hasIndex()) {
+            getIndex(partition); // Only on shutdown, otherwise applyIncomingLogs has it read on the query thread first
+        }
+
+        String playerUuid = log.getPlayerUuid();
+        if (playerUuid != null) {
+            playerUuids.put(LogIndex.playerKey(log.getPlayerName()), playerUuid);
+        }
+
+        // New records only need the index, the ones already on disk are never read for them
+        boolean startsTail = partition.getLogs() == null;
+        partition.add(log);
+        if (startsTail) {
+            markLoaded(partition); // The records in memory can be dropped once they are on disk, see trimLoadedPartitions
+        }
+        totalStats.add(log);
+        logCount++;
+        return dayStarted;
+    }
+
+    private void collect(LogPartition partition, IntList offsets, long since, List<ChestAccessLog> result) {
+        collect(partition, offsets, since, log -> true, result);
+    }
+
+    private void collect(LogPartition partition, IntList offsets, long since, Predicate<LogRecord> filter,
+                         List<ChestAccessLog> result) {
+        // Records on disk are filtered straight on the mapped segments, only matching ones become objects
+        int firstLogOffset = partition.getFirstLogOffset();
+        int split = lowerBound(offsets, firstLogOffset);
+        if (split > 0) {
+            getMapped(partition).scan(offsets.subList(0, split), (offset, record) -> {
+                if (record.getTimestamp() >= since && filter.test(record)) {
+                    result.add(record.toLog());
+                }
+                return true;
+            });
+        }
+
+        List<ChestAccessLog> partitionLogs = partition.getLogs();
+        for (int i = split; i < offsets.size(); i++) {
+            ChestAccessLog log = partitionLogs.get(offsets.getInt(i) - firstLogOffset);
+            if (log.getTimestamp() >= since && filter.test(log)) {
+                result.add(log);
             }
+        }
+    }
 
-            LOGGER.info("Loaded {} chest access logs", logs.size());
-        } catch (IOException e) {
-            LOGGER.error("Failed to load chest logs", e);
+    private ParallelLogScan.Source getSource(LogPartition partition) {
+        LogIndex index = getIndex(partition); // Loads the day if its index had to be rebuilt
+        int firstLogOffset = partition.getFirstLogOffset();
+        return new ParallelLogScan.Source(index, firstLogOffset > 0 ? getMapped(partition) : null, partition.getLogs(), firstLogOffset);
+    }
+
+    private MappedLogDay getMapped(LogPartition partition) {
+        if (partition.getMapped() == null) {
+            // Mapped behind the pending writes, like getLogs, so the files hold every indexed record
+            MappedLogDay[] mapped = new MappedLogDay[1];
+            long day = partition.getDay();
+            if (writer != null) {
+                writer.submit(journal -> mapped[0] = journal.mapDay(day)).join();
+            }
+            if (mapped[0] == null) {
+                return new MappedLogDay(List.of()); // Mapping failed and was logged, try again next time
+            }
+            partition.setMapped(mapped[0]);
+            markMapped(partition);
         }
+        return partition.getMapped();
     }
 
-    private void saveLogsAsync() {
-        // Clear unsaved queue and save synchronously (we're already on server thread)
-        unsavedLogs.clear();
-        saveLogs();
+    private List<ChestAccessLog> getLogs(LogPartition partition) {
+        if (!partition.isLoaded()) {
+            // Read behind the pending writes so every record the index knows about is on disk
+            List<ChestAccessLog> loaded = new ArrayList<>(partition.size());
+            long day = partition.getDay();
+            if (writer != null) {
+                writer.submit(journal -> journal.readDay(day, loaded::add)).join();
+            }
+            boolean hadIndex = partition.hasIndex();
+            LogStats persistedStats = hadIndex ? partition.getStats() : null;
+            int persistedSize = partition.size();
+            if (loaded.size() > persistedSize) {
+                // Saved while incomingLogs waited for this query, they join the day through addToPartition
+                loaded.subList(persistedSize, loaded.size()).clear();
+            }
+            partition.load(loaded);
+            if (partition.size() != persistedSize) {
+                // Rebuilt because the segment lost records, the totals follow the rebuilt index
+                totalStats.subtract(persistedStats != null ? persistedStats : readDayStats(day, persistedSize));
+                totalStats.add(partition.getStats());
+                logCount += partition.size() - persistedSize;
+            }
+            markLoaded(partition);
+            if (!hadIndex) {
+                markIndexed(partition);
+            }
+        }
+        return partition.getLogs();
     }
 
-    private void saveLogs() {
+    private LogStats getDayStats(LogPartition partition) {
+        return partition.hasIndex() ? partition.getStats() : readDayStats(partition.getDay(), partition.size());
+    }
+
+    private LogStats readDayStats(long day, int recordCount) {
+        // Sealed days keep their rollups in the index file, they are only needed when the day leaves the totals
+        LogStats[] stats = new LogStats[1];
+        if (writer != null) {
+            writer.submit(journal -> {
+                stats[0] = journal.readIndexStats(day, recordCount);
+                if (stats[0] == null) {
+                    // The index file is gone or stale, count the records again; ones past recordCount are not
+                    // in the totals yet, see getLogs
+                    LogStats counted = new LogStats();
+                    int[] read = {0};
+                    journal.readDay(day, log -> {
+                        if (read[0]++ < recordCount) {
+                            counted.add(log);
+                        }
+                    });
+                    stats[0] = counted;
+                }
+            }).join();
+        }
+        return stats[0] != null ? stats[0] : new LogStats();
+    }
+
+    private LogIndex getIndex(LogPartition partition) {
+        if (!partition.hasIndex()) {
+            // Sealed days keep only their summary in memory, the postings are read behind the pending writes
+            LogIndex[] index = new LogIndex[1];
+            long day = partition.getDay();
+            if (writer != null) {
+                writer.submit(journal -> index[0] = journal.readIndex(day)).join();
+            }
+            if (index[0] != null && index[0].getRecordCount() == partition.size()) {
+                partition.setIndex(index[0]);
+                markIndexed(partition);
+            } else {
+                getLogs(partition); // The index file is gone or stale, rebuilt from the records
+            }
+        }
+        return partition.getIndex();
+    }
+
+    private void markIndexed(LogPartition partition) {
+        indexedPartitions.addLast(partition);
+        trimIndexedPartitions(partition);
+    }
+
+    private void trimIndexedPartitions(LogPartition keep) {
+        // Days that are loaded or not yet written keep their index and are tried again on the next trim
+        Iterator<LogPartition> iterator = indexedPartitions.iterator();
+        while (indexedPartitions.size() > MAX_INDEXED_PARTITIONS && iterator.hasNext()) {
+            LogPartition oldest = iterator.next();
+            if (oldest != keep && (!oldest.hasIndex() || oldest.evictIndex())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void markMapped(LogPartition partition) {
+        // A mapping pins address space and, on some systems, the file itself until it is collected
+        mappedPartitions.remove(partition); // Mapped again after load dropped the old mapping
+        mappedPartitions.addLast(partition);
+        while (mappedPartitions.size() > MAX_MAPPED_PARTITIONS) {
+            mappedPartitions.removeFirst().setMapped(null);
+        }
+    }
+
+    private void markLoaded(LogPartition partition) {
+        loadedPartitions.remove(partition); // A day collecting new records is tracked before it is read
+        loadedPartitions.addLast(partition);
+        trimLoadedPartitions(partition);
+    }
+
+    private void trimLoadedPartitions(LogPartition keep) {
+        // Only days whose index is on disk can go back to index-only, and never the day still being written
+        LogPartition newest = partitions.isEmpty() ? null : partitions.lastEntry().getValue();
+        Iterator<LogPartition> iterator = loadedPartitions.iterator();
+        while (loadedPartitions.size() > MAX_LOADED_PARTITIONS && iterator.hasNext()) {
+            LogPartition oldest = iterator.next();
+            if (oldest != keep && oldest != newest && oldest.isIndexPersisted()) {
+                oldest.unload();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void persistSealedIndexes() {
+        long today = LogPartition.dayOf(System.currentTimeMillis());
+        for (LogPartition partition : partitions.headMap(today, false).values()) {
+            persistIndex(partition);
+        }
+    }
+
+    private void persistIndex(LogPartition partition) {
+        if (writer == null || partition.isIndexPersisted()) {
+            return;
+        }
+
+        // Serialize here so the writer thread never sees an index that is still being appended to
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        LogIndex.Summary summary;
         try {
-            NbtCompound rootTag = new NbtCompound();
-            NbtList logsList = new NbtList();
+            summary = partition.getIndex().write(new DataOutputStream(buffer));
+        } catch (IOException e) {
+            LOGGER.error("Failed to serialize chest log index", e);
+            return;
+        }
+
+        // Queue the pending records first so the index never describes records that are not on disk
+        saveLogsAsync();
+        long day = partition.getDay();
+        byte[] indexData = buffer.toByteArray();
+        writer.submit(journal -> journal.writeIndex(day, indexData));
+        partition.markIndexPersisted(summary);
+        markIndexed(partition); // Its summary can stand in for it from now on
+    }
+
+    private void loadLogs() {
+        try {
+            journal = new LogJournal(journalDir);
 
-            for (ChestAccessLog log : logs) {
-                logsList.add(log.toNBT());
+            if (journal.isEmpty() && logFile.exists()) {
+                migrateLegacyLogs();
             }
 
-            rootTag.put("Logs", logsList);
+            // Days with an up-to-date index start out with only its summary, postings and records are read
+            // when a query gets past the day's filter
+            int rebuilt = 0;
+            long today = LogPartition.dayOf(System.currentTimeMillis());
+            for (long day : journal.getDays()) {
+                LogIndex.Summary summary = journal.readIndexSummary(day, totalStats);
+                if (summary != null) {
+                    LogPartition partition = LogPartition.ofSummary(day, summary);
+                    if (day == today) {
+                        // Records are appended to today right away, with its postings in memory that never
+                        // needs the records already on disk
+                        LogIndex index = journal.readIndex(day);
+                        if (index != null && index.getRecordCount() == summary.recordCount()) {
+                            partition.setIndex(index);
+                        }
+                    }
+                    partitions.put(day, partition);
+                    playerUuids.putAll(summary.playerUuids()); // Days go oldest first, newer names win
+                    logCount += summary.recordCount();
+                    continue;
+                }
 
-            // Ensure parent directory exists
-            File parentDir = logFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
+                // No index yet, or records were added after it was written (e.g. after a crash)
+                LogPartition partition = new LogPartition(day);
+                journal.readDay(day, partition::addWithoutIndex);
+                partition.rebuildIndex();
+                partitions.put(day, partition);
+                playerUuids.putAll(partition.getIndex().getPlayerUuids());
+                loadedPartitions.addLast(partition);
+                logCount += partition.size();
+                totalStats.add(partition.getStats());
+                rebuilt++;
             }
 
-            NbtIo.writeCompressed(rootTag, logFile.toPath());
+            LOGGER.info("Found {} chest access logs in {} segments ({} days read to rebuild their index)",
+                    logCount, journal.getSegmentCount(), rebuilt);
         } catch (IOException e) {
-            LOGGER.error("Failed to save chest logs", e);
+            LOGGER.error("Failed to load chest logs", e);
+        }
+    }
+
+    private void migrateLegacyLogs() throws IOException {
+        List<ChestAccessLog> legacyLogs = new ArrayList<>();
+        NbtCompound rootTag = NbtIo.readCompressed(logFile.toPath(), NbtSizeTracker.ofUnlimitedBytes());
+        if (rootTag.contains("Logs")) {
+            rootTag.getList("Logs").ifPresent(logsList -> {
+                for (int i = 0; i < logsList.size(); i++) {
+                    logsList.getCompound(i).ifPresent(logTag ->
+                        legacyLogs.add(ChestAccessLog.fromNBT(logTag))
+                    );
+                }
+            });
+        }
+
+        journal.append(legacyLogs);
+
+        // Keep the old file around instead of deleting it, but make sure it is not imported twice
+        Path migratedPath = logFile.toPath().resolveSibling(LOG_FILE_NAME + ".migrated");
+        Files.move(logFile.toPath(), migratedPath);
+        LOGGER.info("Migrated {} chest access logs from {} to the log journal", legacyLogs.size(), LOG_FILE_NAME);
+    }
+
+    private void saveLogsAsync() {
+        // Hand the pending logs to the writer thread, the disk is never touched on the server thread
+        if (writer == null || unsavedLogs.isEmpty()) {
+            return;
         }
+
+        writer.submit(unsavedLogs);
+        unsavedLogs.clear();
     }
 
     public int getLogCount() {
-        return logs.size();
+        return logCount;
+    }
+
+    public LogStats getStats() {
+        // Expects lock to be held like the queries, see submitQuery
+        return totalStats;
     }
 }
@@ -5,6 +5,7 @@ import net.fabricmc.fabric.api.event.player.UseBlockCallback;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.ActionResult;
@@ -35,24 +36,25 @@ public class ChestProtectionHandler {
 
         BlockPos pos = hitResult.getBlockPos();
 
-        // Check if it's a container block with a BlockEntity
-        if (world.getBlockEntity(pos) == null) {
-            return ActionResult.PASS; // Not a block entity
-        }
-
-        // Check if this container is locked
+        // Check if this container is locked - a single probe that allocates nothing
         ChestLockManager lockManager = Chestlogger.getLockManager();
         if (lockManager == null) {
             return ActionResult.PASS;
         }
 
-        String dimension = world.getRegistryKey().getValue().toString();
+        ChestLock lock = lockManager.getLock(pos, world.getRegistryKey());
+        if (lock == null) {
+            return ActionResult.PASS; // Not locked
+        }
+
+        // Check if it's a container block with a BlockEntity
+        if (world.getBlockEntity(pos) == null) {
+            return ActionResult.PASS; // Not a block entity
+        }
 
-        if (lockManager.isLocked(pos, dimension)) {
-            if (!lockManager.canAccess(serverPlayer, pos, dimension)) {
-                serverPlayer.sendMessage(Text.literal("§cThis container is locked!"), false);
-                return ActionResult.FAIL; // Block the interaction
-            }
+        if (!lockManager.canAccess(serverPlayer, lock)) {
+            serverPlayer.sendMessage(Text.literal("§cThis container is locked!"), false);
+            return ActionResult.FAIL; // Block the interaction
         }
 
         return ActionResult.PASS; // Allow the interaction
@@ -72,11 +74,12 @@ public class ChestProtectionHandler {
             return true;
         }
 
-        String dimension = world.getRegistryKey().getValue().toString();
+        RegistryKey<World> dimension = world.getRegistryKey();
+        ChestLock lock = lockManager.getLock(pos, dimension);
 
-        if (lockManager.isLocked(pos, dimension)) {
+        if (lock != null) {
             // Check if player is owner or admin
-            if (!lockManager.canAccess(serverPlayer, pos, dimension)) {
+            if (!lockManager.canAccess(serverPlayer, lock)) {
                 player.sendMessage(Text.literal("§cThis container is locked and you cannot break it!"), false);
                 return false; // Cancel the break
             } else if (!serverPlayer.hasPermissionLevel(2)) {
@@ -87,7 +90,7 @@ public class ChestProtectionHandler {
             } else {
                 // Admin breaking - warn but allow
                 player.sendMessage(Text.literal("§6Admin: Broke locked container owned by " +
-                    lockManager.getLock(pos, dimension).getOwnerName()), false);
+                    lock.getOwnerName()), false);
                 lockManager.unlockChest(pos, dimension);
                 return true; // Allow break
             }
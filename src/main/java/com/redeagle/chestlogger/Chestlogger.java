@@ -1,6 +1,7 @@
 package com.redeagle.chestlogger;
 
 import net.fabricmc.api.DedicatedServerModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.minecraft.server.MinecraftServer;
@@ -23,8 +24,21 @@ public class Chestlogger implements DedicatedServerModInitializer {
         // Register server lifecycle events
         ServerLifecycleEvents.SERVER_STARTING.register(this::onServerStarting);
         ServerLifecycleEvents.SERVER_STOPPING.register(this::onServerStopping);
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> ContainerBlocks.rebuild());
         ServerTickEvents.END_SERVER_TICK.register(this::onServerTick);
 
+        // Locks are kept in memory only for regions with loaded chunks
+        ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            if (lockManager != null) {
+                lockManager.onChunkLoad(world.getRegistryKey(), chunk.getPos());
+            }
+        });
+        ServerChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> {
+            if (lockManager != null) {
+                lockManager.onChunkUnload(world.getRegistryKey(), chunk.getPos());
+            }
+        });
+
         // Register command handler will be done in ChestLogCommands
         ChestLogCommands.register();
 
@@ -42,6 +56,9 @@ public class Chestlogger implements DedicatedServerModInitializer {
         if (logManager != null) {
             logManager.tick();
         }
+        if (lockManager != null) {
+            lockManager.tick();
+        }
     }
 
     private void onServerStarting(MinecraftServer server) {
@@ -50,6 +67,7 @@ public class Chestlogger implements DedicatedServerModInitializer {
         // Load config
         Path configPath = server.getRunDirectory().resolve("config");
         Config.load(configPath);
+        ContainerBlocks.rebuild();
 
         // Initialize log manager
         logManager = new ChestLogManager(server);
@@ -63,7 +81,7 @@ public class Chestlogger implements DedicatedServerModInitializer {
     private void onServerStopping(MinecraftServer server) {
         LOGGER.info("Chest Logger wird heruntergefahren...");
         if (logManager != null) {
-            logManager.flush(); // Save all unsaved logs before shutdown
+            logManager.close(); // Save all unsaved logs and stop the writer thread before shutdown
         }
         if (lockManager != null) {
             lockManager.flush(); // Save all unsaved locks before shutdown
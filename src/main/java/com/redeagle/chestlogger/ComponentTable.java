@@ -0,0 +1,34 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Arrays;
+
+public class ComponentTable {
+    // Item component data (SNBT) shared by every log record in memory, like SymbolTable: each distinct blob is
+    // kept once and records compare and hash ids instead of the text. Ids start at 1, 0 stands for a plain item
+    private static final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+    private static volatile String[] blobs = new String[64];
+    private static int size = 1;
+
+    public static synchronized int intern(String itemComponents) {
+        int id = ids.getInt(itemComponents);
+        if (id > 0) {
+            return id;
+        }
+
+        id = size++;
+        String[] current = blobs;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = itemComponents;
+        blobs = current; // Publishes the new entry to lock-free readers in get
+        ids.put(itemComponents, id);
+        return id;
+    }
+
+    public static String get(int id) {
+        return blobs[id];
+    }
+}
@@ -8,18 +8,23 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Config {
     private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
     // Config values
-    public static int logRetentionDays = 30;
+    public static int logRetentionDays = 30; // 0 or less = keep logs forever
     public static boolean trackChests = true;
     public static boolean trackBarrels = true;
     public static boolean trackShulkerBoxes = true;
     public static boolean trackEnderChests = false;
     public static boolean trackHoppers = false;
+    // Matched against block ids to find modded containers: "#namespace:tag" = block tag,
+    // "namespace:id" = exact block id, anything else = part of the block id
+    public static List<String> containerBlockPatterns = defaultContainerBlockPatterns();
 
     // Chest locking config
     public static boolean enableChestLocking = true;
@@ -42,6 +47,9 @@ public class Config {
                 trackShulkerBoxes = data.trackShulkerBoxes;
                 trackEnderChests = data.trackEnderChests;
                 trackHoppers = data.trackHoppers;
+                containerBlockPatterns = data.containerBlockPatterns != null
+                        ? new ArrayList<>(data.containerBlockPatterns)
+                        : defaultContainerBlockPatterns();
 
                 enableChestLocking = data.enableChestLocking;
                 maxLocksPerPlayer = data.maxLocksPerPlayer;
@@ -73,6 +81,7 @@ public class Config {
             data.trackShulkerBoxes = trackShulkerBoxes;
             data.trackEnderChests = trackEnderChests;
             data.trackHoppers = trackHoppers;
+            data.containerBlockPatterns = new ArrayList<>(containerBlockPatterns);
 
             data.enableChestLocking = enableChestLocking;
             data.maxLocksPerPlayer = maxLocksPerPlayer;
@@ -89,6 +98,10 @@ public class Config {
         }
     }
 
+    private static List<String> defaultContainerBlockPatterns() {
+        return new ArrayList<>(List.of("chest", "barrel", "shulker", "storage", "container"));
+    }
+
     private static class ConfigData {
         int logRetentionDays = 30;
         boolean trackChests = true;
@@ -96,6 +109,7 @@ public class Config {
         boolean trackShulkerBoxes = true;
         boolean trackEnderChests = false;
         boolean trackHoppers = false;
+        List<String> containerBlockPatterns = defaultContainerBlockPatterns();
 
         boolean enableChestLocking = true;
         int maxLocksPerPlayer = -1;
@@ -0,0 +1,105 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSets;
+import net.minecraft.block.BarrelBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.ChestBlock;
+import net.minecraft.block.EnderChestBlock;
+import net.minecraft.block.HopperBlock;
+import net.minecraft.block.ShulkerBoxBlock;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class ContainerBlocks {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
+
+    // Identity sets over the block registry, swapped as a whole on rebuild
+    private static volatile ReferenceSet<Block> trackedBlocks = ReferenceSets.emptySet();
+    private static volatile ReferenceSet<Block> lockableBlocks = ReferenceSets.emptySet();
+
+    public static boolean isTracked(Block block) {
+        return trackedBlocks.contains(block);
+    }
+
+    public static boolean isLockable(Block block) {
+        return lockableBlocks.contains(block);
+    }
+
+    public static void rebuild() {
+        // Called on server start, after data pack reloads (tags may change) and after config reloads
+        List<String> idPatterns = new ArrayList<>();
+        ReferenceSet<Block> taggedBlocks = new ReferenceOpenHashSet<>();
+        for (String pattern : Config.containerBlockPatterns) {
+            if (pattern.startsWith("#")) {
+                Identifier tagId = Identifier.tryParse(pattern.substring(1));
+                if (tagId == null) {
+                    LOGGER.warn("Invalid block tag in containerBlockPatterns: {}", pattern);
+                    continue;
+                }
+                for (RegistryEntry<Block> entry : Registries.BLOCK.iterateEntries(TagKey.of(RegistryKeys.BLOCK, tagId))) {
+                    taggedBlocks.add(entry.value());
+                }
+            } else {
+                idPatterns.add(pattern.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        ReferenceSet<Block> tracked = new ReferenceOpenHashSet<>();
+        ReferenceSet<Block> lockable = new ReferenceOpenHashSet<>();
+        for (Block block : Registries.BLOCK) {
+            if (isVanillaContainer(block)) {
+                // Vanilla containers are controlled by their own config switches only
+                if ((Config.trackChests && block instanceof ChestBlock) ||
+                    (Config.trackBarrels && block instanceof BarrelBlock) ||
+                    (Config.trackShulkerBoxes && block instanceof ShulkerBoxBlock) ||
+                    (Config.trackEnderChests && block instanceof EnderChestBlock) ||
+                    (Config.trackHoppers && block instanceof HopperBlock)) {
+                    tracked.add(block);
+                }
+                if (!(block instanceof HopperBlock)) {
+                    lockable.add(block);
+                }
+                continue;
+            }
+
+            // Modded containers (Reinforced Chests, storage mods, ...) are found by id or tag
+            if (taggedBlocks.contains(block) || matchesIdPattern(Registries.BLOCK.getId(block).toString(), idPatterns)) {
+                tracked.add(block);
+                lockable.add(block);
+            }
+        }
+
+        trackedBlocks = tracked;
+        lockableBlocks = lockable;
+        LOGGER.info("Tracking {} container blocks, {} lockable", tracked.size(), lockable.size());
+    }
+
+    private static boolean isVanillaContainer(Block block) {
+        return block instanceof ChestBlock ||
+               block instanceof BarrelBlock ||
+               block instanceof ShulkerBoxBlock ||
+               block instanceof EnderChestBlock ||
+               block instanceof HopperBlock;
+    }
+
+    private static boolean matchesIdPattern(String blockId, List<String> idPatterns) {
+        for (String pattern : idPatterns) {
+            boolean matches = pattern.indexOf(':') >= 0 ? blockId.equals(pattern) : blockId.contains(pattern);
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
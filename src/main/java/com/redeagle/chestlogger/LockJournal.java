@@ -0,0 +1,427 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class LockJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
+    private static final String JOURNAL_FILE_NAME = "locks.journal";
+    private static final String OWNER_INDEX_FILE_NAME = "owners.dat";
+    private static final String REGION_PREFIX = "r.";
+    private static final String REGION_SUFFIX = ".dat";
+    private static final byte OP_LOCK = 1;
+    private static final byte OP_UNLOCK = 2;
+    private static final int MAX_ENTRY_BYTES = 64 * 1024; // Anything larger is treated as corruption
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // Region files live under <directory>/<namespace>/<path>/r.<x>.<z>.dat, one per 32x32 chunks
+    private final Path directory;
+    private final Path journalFile;
+    private final Path ownerIndexFile;
+    private final ExecutorService executor;
+
+    // Region snapshots queued on the writer thread; reads see them before they reach the disk
+    private final Map<Path, List<ChestLock>> pendingRegionWrites = new ConcurrentHashMap<>();
+
+    // Mutations since the last flush, encoded on the server thread and handed over as one byte array
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOutput = new DataOutputStream(pending);
+    private final ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream entryOutput = new DataOutputStream(entryBuffer);
+    private int entriesSinceSnapshot = 0;
+
+    private interface ReplayHandler {
+        void onLock(ChestLock lock);
+
+        void onUnlock(String dimension, long packedPos);
+    }
+
+    public LockJournal(Path directory) {
+        this.directory = directory;
+        this.journalFile = directory.resolve(JOURNAL_FILE_NAME);
+        this.ownerIndexFile = directory.resolve(OWNER_INDEX_FILE_NAME);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChestLogger-LockWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public LockOwnerIndex recover(Path legacySnapshot) throws IOException {
+        Files.createDirectories(directory);
+        boolean rebuildOwners = false;
+
+        // The single-file lock store is split into region files once
+        if (Files.exists(legacySnapshot)) {
+            migrateLegacy(legacySnapshot);
+            rebuildOwners = true;
+        }
+
+        // A leftover journal means the server did not shut down cleanly; fold it into the region files
+        if (Files.exists(journalFile)) {
+            RegionBatch batch = new RegionBatch();
+            int entries = replayJournal(journalFile, batch);
+            batch.writeAll();
+            Files.delete(journalFile);
+            LOGGER.info("Replayed {} chest lock changes into {} region files", entries, batch.regions.size());
+            rebuildOwners = true;
+        }
+
+        LockOwnerIndex owners = rebuildOwners ? null : readOwnerIndex();
+        if (owners == null) {
+            owners = rebuildOwnerIndex();
+            writeAtomically(ownerIndexFile, owners.toBytes());
+        }
+        return owners;
+    }
+
+    public CompletableFuture<List<ChestLock>> readRegionAsync(String dimension, long regionKey) {
+        // Read on the writer thread, behind every change to the region that is already queued
+        return CompletableFuture.supplyAsync(() -> readRegion(dimension, regionKey), executor);
+    }
+
+    private List<ChestLock> readRegion(String dimension, long regionKey) {
+        Path regionFile = getRegionPath(dimension, regionKey);
+        List<ChestLock> queued = pendingRegionWrites.get(regionFile);
+        if (queued != null) {
+            return queued;
+        }
+
+        try {
+            return readLocksFile(regionFile);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read chest lock region {}", regionFile, e);
+            return new ArrayList<>();
+        }
+    }
+
+    public void writeRegion(String dimension, long regionKey, List<ChestLock> locks) {
+        // The journal must already contain every change the region file is about to reflect
+        flush();
+        Path regionFile = getRegionPath(dimension, regionKey);
+        pendingRegionWrites.put(regionFile, locks);
+        executor.execute(() -> {
+            try {
+                writeLocksFile(regionFile, locks);
+            } catch (IOException e) {
+                LOGGER.error("Failed to write chest lock region {}", regionFile, e);
+            } finally {
+                pendingRegionWrites.remove(regionFile, locks);
+            }
+        });
+    }
+
+    public void recordLock(ChestLock lock) {
+        writeEntry(output -> {
+            output.writeByte(OP_LOCK);
+            output.writeLong(lock.getOwnerUUID().getMostSignificantBits());
+            output.writeLong(lock.getOwnerUUID().getLeastSignificantBits());
+            output.writeUTF(lock.getOwnerName());
+            output.writeUTF(lock.getDimension());
+            output.writeLong(lock.getPosition().asLong());
+            output.writeLong(lock.getLockTimestamp());
+        });
+    }
+
+    public void recordUnlock(String dimension, BlockPos pos) {
+        writeEntry(output -> {
+            output.writeByte(OP_UNLOCK);
+            output.writeUTF(dimension);
+            output.writeLong(pos.asLong());
+        });
+    }
+
+    public boolean hasPending() {
+        return pending.size() > 0;
+    }
+
+    public int getEntriesSinceSnapshot() {
+        return entriesSinceSnapshot;
+    }
+
+    public void flush() {
+        if (!hasPending()) {
+            return;
+        }
+
+        byte[] entries = pending.toByteArray();
+        pending.reset();
+        executor.execute(() -> {
+            try {
+                appendToJournal(entries);
+            } catch (IOException e) {
+                LOGGER.error("Failed to write chest lock journal", e);
+            }
+        });
+    }
+
+    public void compact(byte[] ownerIndexData) {
+        // Callers queue every dirty region first, so once these run the journal holds nothing new
+        flush();
+        entriesSinceSnapshot = 0;
+        executor.execute(() -> {
+            try {
+                writeAtomically(ownerIndexFile, ownerIndexData);
+                Files.deleteIfExists(journalFile);
+            } catch (IOException e) {
+                LOGGER.error("Failed to compact chest lock journal", e);
+            }
+        });
+    }
+
+    public void close(byte[] ownerIndexData) {
+        compact(ownerIndexData);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Lock writer did not finish within {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Region files touched while recovering, loaded on first use and written back together
+    private class RegionBatch implements ReplayHandler {
+        final Map<Path, Long2ObjectOpenHashMap<ChestLock>> regions = new HashMap<>();
+
+        Long2ObjectOpenHashMap<ChestLock> getRegion(String dimension, long packedPos) {
+            Path regionFile = getRegionPath(dimension, LockRegion.keyOf(BlockPos.fromLong(packedPos)));
+            return regions.computeIfAbsent(regionFile, path -> {
+                Long2ObjectOpenHashMap<ChestLock> locks = new Long2ObjectOpenHashMap<>();
+                try {
+                    for (ChestLock lock : readLocksFile(path)) {
+                        locks.put(lock.getPosition().asLong(), lock);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Failed to read chest lock region {}", path, e);
+                }
+                return locks;
+            });
+        }
+
+        @Override
+        public void onLock(ChestLock lock) {
+            getRegion(lock.getDimension(), lock.getPosition().asLong()).put(lock.getPosition().asLong(), lock);
+        }
+
+        @Override
+        public void onUnlock(String dimension, long packedPos) {
+            getRegion(dimension, packedPos).remove(packedPos);
+        }
+
+        void writeAll() throws IOException {
+            for (Map.Entry<Path, Long2ObjectOpenHashMap<ChestLock>> region : regions.entrySet()) {
+                writeLocksFile(region.getKey(), new ArrayList<>(region.getValue().values()));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    private void writeEntry(EntryWriter writer) {
+        try {
+            entryBuffer.reset();
+            writer.write(entryOutput);
+            pendingOutput.writeInt(entryBuffer.size());
+            entryBuffer.writeTo(pendingOutput);
+            entriesSinceSnapshot++;
+        } catch (IOException e) {
+            // Only in-memory streams are involved here
+            LOGGER.error("Failed to encode chest lock change", e);
+        }
+    }
+
+    private void appendToJournal(byte[] entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(entries);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private Path getRegionPath(String dimension, long regionKey) {
+        Identifier dimensionId = Identifier.of(dimension);
+        return directory.resolve(dimensionId.getNamespace()).resolve(dimensionId.getPath())
+                .resolve(REGION_PREFIX + LockRegion.getRegionX(regionKey) + "." + LockRegion.getRegionZ(regionKey) + REGION_SUFFIX);
+    }
+
+    private void migrateLegacy(Path legacySnapshot) throws IOException {
+        RegionBatch batch = new RegionBatch();
+        for (ChestLock lock : readLocksFile(legacySnapshot)) {
+            batch.onLock(lock);
+        }
+        batch.writeAll();
+
+        Files.move(legacySnapshot, legacySnapshot.resolveSibling(legacySnapshot.getFileName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        int migrated = 0;
+        for (Long2ObjectOpenHashMap<ChestLock> region : batch.regions.values()) {
+            migrated += region.size();
+        }
+        LOGGER.info("Moved {} chest locks into {} region files", migrated, batch.regions.size());
+    }
+
+    private LockOwnerIndex readOwnerIndex() {
+        if (!Files.exists(ownerIndexFile)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(ownerIndexFile)))) {
+            return LockOwnerIndex.read(input);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read lock owner index, it will be rebuilt: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private LockOwnerIndex rebuildOwnerIndex() throws IOException {
+        LockOwnerIndex owners = new LockOwnerIndex();
+        int regions = 0;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(REGION_PREFIX) || !name.endsWith(REGION_SUFFIX)) {
+                    continue;
+                }
+
+                for (ChestLock lock : readLocksFile(file)) {
+                    owners.add(lock);
+                }
+                regions++;
+            }
+        }
+
+        LOGGER.info("Rebuilt lock owner index from {} region files ({} locks)", regions, owners.getTotalLockCount());
+        return owners;
+    }
+
+    private static List<ChestLock> readLocksFile(Path file) throws IOException {
+        List<ChestLock> locks = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return locks;
+        }
+
+        NbtCompound rootTag = NbtIo.readCompressed(file, NbtSizeTracker.ofUnlimitedBytes());
+        if (rootTag.contains("Locks")) {
+            rootTag.getList("Locks").ifPresent(locksList -> {
+                for (int i = 0; i < locksList.size(); i++) {
+                    locksList.getCompound(i).ifPresent(lockTag -> locks.add(ChestLock.fromNBT(lockTag)));
+                }
+            });
+        }
+        return locks;
+    }
+
+    private static void writeLocksFile(Path file, List<ChestLock> locks) throws IOException {
+        if (locks.isEmpty()) {
+            Files.deleteIfExists(file); // Regions without locks have no file at all
+            return;
+        }
+
+        NbtCompound rootTag = new NbtCompound();
+        NbtList locksList = new NbtList();
+        for (ChestLock lock : locks) {
+            locksList.add(lock.toNBT());
+        }
+        rootTag.put("Locks", locksList);
+
+        Files.createDirectories(file.getParent());
+
+        // Write next to the real file first so a crash never leaves a half-written region behind
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        NbtIo.writeCompressed(rootTag, tempFile);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeAtomically(Path file, byte[] data) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tempFile, data);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int replayJournal(Path journal, ReplayHandler handler) throws IOException {
+        int entries = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of journal
+                }
+
+                if (length <= 0 || length > MAX_ENTRY_BYTES) {
+                    LOGGER.warn("Invalid entry length {} in lock journal, ignoring the rest", length);
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                try {
+                    input.readFully(payload);
+                } catch (EOFException e) {
+                    LOGGER.warn("Incomplete entry at the end of the lock journal, ignoring it");
+                    break;
+                }
+
+                replayEntry(new DataInputStream(new ByteArrayInputStream(payload)), handler);
+                entries++;
+            }
+        }
+        return entries;
+    }
+
+    private static void replayEntry(DataInputStream input, ReplayHandler handler) throws IOException {
+        byte op = input.readByte();
+        if (op == OP_LOCK) {
+            UUID owner = new UUID(input.readLong(), input.readLong());
+            String ownerName = input.readUTF();
+            String dimension = input.readUTF();
+            BlockPos pos = BlockPos.fromLong(input.readLong());
+            long timestamp = input.readLong();
+            handler.onLock(new ChestLock(owner, ownerName, pos, dimension, timestamp));
+        } else if (op == OP_UNLOCK) {
+            handler.onUnlock(input.readUTF(), input.readLong());
+        } else {
+            LOGGER.warn("Unknown operation {} in lock journal, skipping entry", op);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class LockOwnerIndex {
+    private static final int FORMAT_VERSION = 1;
+
+    // Owner -> dimension -> region key -> number of their locks there, enough for quotas and to find their regions
+    private final Map<UUID, Map<String, Long2IntOpenHashMap>> regionsByOwner = new HashMap<>();
+    private final Object2IntOpenHashMap<UUID> countByOwner = new Object2IntOpenHashMap<>();
+    // Dimension -> region key -> number of locks, regions without an entry have no file to read
+    private final Map<String, Long2IntOpenHashMap> locksPerRegion = new HashMap<>();
+    private int lockCount = 0;
+
+    public void add(ChestLock lock) {
+        add(lock.getOwnerUUID(), lock.getDimension(), LockRegion.keyOf(lock.getPosition()), 1);
+    }
+
+    public void remove(ChestLock lock) {
+        add(lock.getOwnerUUID(), lock.getDimension(), LockRegion.keyOf(lock.getPosition()), -1);
+    }
+
+    public int getLockCount(UUID owner) {
+        return countByOwner.getInt(owner);
+    }
+
+    public int getTotalLockCount() {
+        return lockCount;
+    }
+
+    public boolean hasLocks(String dimension, long regionKey) {
+        Long2IntOpenHashMap regions = locksPerRegion.get(dimension);
+        return regions != null && regions.containsKey(regionKey);
+    }
+
+    public Map<String, Long2IntOpenHashMap> getRegions(UUID owner) {
+        Map<String, Long2IntOpenHashMap> regions = regionsByOwner.get(owner);
+        return regions != null ? Collections.unmodifiableMap(regions) : Collections.emptyMap();
+    }
+
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + regionsByOwner.size() * 64);
+            write(new DataOutputStream(buffer));
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize lock owner index", e); // In-memory stream only
+        }
+    }
+
+    public void write(DataOutputStream output) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(regionsByOwner.size());
+        for (Map.Entry<UUID, Map<String, Long2IntOpenHashMap>> owner : regionsByOwner.entrySet()) {
+            output.writeLong(owner.getKey().getMostSignificantBits());
+            output.writeLong(owner.getKey().getLeastSignificantBits());
+            output.writeInt(owner.getValue().size());
+            for (Map.Entry<String, Long2IntOpenHashMap> dimension : owner.getValue().entrySet()) {
+                output.writeUTF(dimension.getKey());
+                output.writeInt(dimension.getValue().size());
+                for (Long2IntMap.Entry region : dimension.getValue().long2IntEntrySet()) {
+                    output.writeLong(region.getLongKey());
+                    output.writeInt(region.getIntValue());
+                }
+            }
+        }
+    }
+
+    public static LockOwnerIndex read(DataInput input) throws IOException {
+        int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported lock owner index version " + version);
+        }
+
+        LockOwnerIndex index = new LockOwnerIndex();
+        int owners = input.readInt();
+        for (int i = 0; i < owners; i++) {
+            UUID owner = new UUID(input.readLong(), input.readLong());
+            int dimensions = input.readInt();
+            for (int j = 0; j < dimensions; j++) {
+                String dimension = input.readUTF();
+                int regions = input.readInt();
+                for (int k = 0; k < regions; k++) {
+                    long regionKey = input.readLong();
+                    int count = input.readInt();
+                    if (count <= 0) {
+                        throw new IOException("Invalid lock count " + count + " in lock owner index");
+                    }
+                    index.add(owner, dimension, regionKey, count);
+                }
+            }
+        }
+        return index;
+    }
+
+    private void add(UUID owner, String dimension, long regionKey, int delta) {
+        Map<String, Long2IntOpenHashMap> ownerRegions = regionsByOwner.computeIfAbsent(owner, key -> new HashMap<>());
+        Long2IntOpenHashMap ownerDimension = ownerRegions.computeIfAbsent(dimension, key -> new Long2IntOpenHashMap());
+        if (ownerDimension.addTo(regionKey, delta) + delta <= 0) {
+            ownerDimension.remove(regionKey);
+            if (ownerDimension.isEmpty()) {
+                ownerRegions.remove(dimension);
+            }
+        }
+        if (ownerRegions.isEmpty()) {
+            regionsByOwner.remove(owner);
+        }
+
+        if (countByOwner.addTo(owner, delta) + delta <= 0) {
+            countByOwner.removeInt(owner);
+        }
+
+        Long2IntOpenHashMap dimensionRegions = locksPerRegion.computeIfAbsent(dimension, key -> new Long2IntOpenHashMap());
+        if (dimensionRegions.addTo(regionKey, delta) + delta <= 0) {
+            dimensionRegions.remove(regionKey);
+            if (dimensionRegions.isEmpty()) {
+                locksPerRegion.remove(dimension);
+            }
+        }
+
+        lockCount += delta;
+    }
+}
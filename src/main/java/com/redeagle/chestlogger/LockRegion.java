@@ -0,0 +1,87 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class LockRegion {
+    private static final int REGION_SHIFT = 5; // 32x32 chunks, same layout as the vanilla region files
+
+    private final Long2ObjectOpenHashMap<ChestLock> locks = new Long2ObjectOpenHashMap<>(); // BlockPos.asLong() -> lock
+    private int loadedChunks = 0;
+    private boolean dirty = false; // Changed since the region file was last written
+    private boolean loading = false; // Its locks are still being read, see ChestLockManager.loadRegion
+
+    public static long keyOf(BlockPos pos) {
+        return ChunkPos.toLong(pos.getX() >> (4 + REGION_SHIFT), pos.getZ() >> (4 + REGION_SHIFT));
+    }
+
+    public static long keyOf(ChunkPos chunkPos) {
+        return ChunkPos.toLong(chunkPos.x >> REGION_SHIFT, chunkPos.z >> REGION_SHIFT);
+    }
+
+    public static int getRegionX(long key) {
+        return ChunkPos.getPackedX(key);
+    }
+
+    public static int getRegionZ(long key) {
+        return ChunkPos.getPackedZ(key);
+    }
+
+    public ChestLock get(long packedPos) {
+        return locks.get(packedPos);
+    }
+
+    public ChestLock put(ChestLock lock) {
+        return locks.put(lock.getPosition().asLong(), lock);
+    }
+
+    public ChestLock remove(long packedPos) {
+        return locks.remove(packedPos);
+    }
+
+    public boolean isEmpty() {
+        return locks.isEmpty();
+    }
+
+    public Collection<ChestLock> getLocks() {
+        return locks.values();
+    }
+
+    public List<ChestLock> copyLocks() {
+        return new ArrayList<>(locks.values());
+    }
+
+    public void retain() {
+        loadedChunks++;
+    }
+
+    public boolean release() {
+        // True once the last loaded chunk of this region is gone
+        return --loadedChunks <= 0;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public void setLoading(boolean loading) {
+        this.loading = loading;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public void markClean() {
+        dirty = false;
+    }
+}
@@ -0,0 +1,129 @@
+package com.redeagle.chestlogger;
+
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class LogBloomFilter {
+    private static final int BITS_PER_KEY = 10; // About 1% false positives with 7 hash functions
+    private static final int HASH_COUNT = 7;
+    private static final int MAX_CHUNKS_TO_PROBE = 64; // Larger boxes are assumed to match
+
+    // Key kinds are salted apart so a player name can never answer for an item id
+    private static final long PLAYER_SALT = 0x9E3779B97F4A7C15L;
+    private static final long ITEM_SALT = 0xC2B2AE3D27D4EB4FL;
+    private static final long CONTAINER_SALT = 0x165667B19E3779F9L;
+    private static final long CHUNK_SALT = 0x27D4EB2F165667C5L;
+
+    private final long[] bits;
+
+    public LogBloomFilter(int expectedKeys) {
+        this.bits = new long[Math.max(1, (int) ((Math.max(1L, expectedKeys) * BITS_PER_KEY + 63) / 64))];
+    }
+
+    private LogBloomFilter(long[] bits) {
+        this.bits = bits;
+    }
+
+    public void addPlayer(String playerName) {
+        add(hash(PLAYER_SALT, LogIndex.playerKey(playerName)));
+    }
+
+    public boolean mightContainPlayer(String playerName) {
+        return mightContain(hash(PLAYER_SALT, LogIndex.playerKey(playerName)));
+    }
+
+    public void addItem(String itemId) {
+        add(hash(ITEM_SALT, itemId));
+    }
+
+    public boolean mightContainItem(String itemId) {
+        return mightContain(hash(ITEM_SALT, itemId));
+    }
+
+    public void addContainer(String dimension, long packedPos) {
+        add(hash(CONTAINER_SALT, dimension, packedPos));
+    }
+
+    public boolean mightContainContainer(String dimension, long packedPos) {
+        return mightContain(hash(CONTAINER_SALT, dimension, packedPos));
+    }
+
+    public void addChunk(String dimension, long chunkKey) {
+        add(hash(CHUNK_SALT, dimension, chunkKey));
+    }
+
+    public boolean mightContainChunks(String dimension, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        if ((long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > MAX_CHUNKS_TO_PROBE) {
+            return true;
+        }
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (mightContain(hash(CHUNK_SALT, dimension, ChunkPos.toLong(chunkX, chunkZ)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void add(long hash) {
+        long bitCount = bits.length * 64L;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Math.floorMod(hash + i * (hash >>> 32 | 1), bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long hash) {
+        long bitCount = bits.length * 64L;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Math.floorMod(hash + i * (hash >>> 32 | 1), bitCount);
+            if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(long salt, String key) {
+        // FNV-1a over the chars, then mixed; String.hashCode alone has too few bits for a large filter
+        long hash = 0xCBF29CE484222325L ^ salt;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long hash(long salt, String dimension, long key) {
+        return mix(hash(salt, dimension) ^ mix(key + salt));
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(bits.length);
+        for (long word : bits) {
+            output.writeLong(word);
+        }
+    }
+
+    public static LogBloomFilter read(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length <= 0) {
+            throw new IOException("Invalid bloom filter size " + length);
+        }
+        long[] bits = new long[length];
+        for (int i = 0; i < length; i++) {
+            bits[i] = input.readLong();
+        }
+        return new LogBloomFilter(bits);
+    }
+}
@@ -0,0 +1,62 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+public class LogDictionary {
+    // Strings of one segment in the order their symbol frames appear, the position is the id on disk.
+    // Both directions map to SymbolTable ids so records never hash a string while being encoded or decoded.
+    private final IntArrayList symbolIds = new IntArrayList();
+    private final Int2IntOpenHashMap localIds = new Int2IntOpenHashMap();
+    // Component blobs get their own ids in the order of their frames and map to ComponentTable ids the same way,
+    // so equal data is stored once per segment and different data can never share an id
+    private final IntArrayList componentIds = new IntArrayList();
+    private final Int2IntOpenHashMap componentLocalIds = new Int2IntOpenHashMap();
+
+    public LogDictionary() {
+        localIds.defaultReturnValue(-1);
+        componentLocalIds.defaultReturnValue(-1);
+    }
+
+    public int getLocalId(int symbolId) {
+        return localIds.get(symbolId);
+    }
+
+    public int add(int symbolId) {
+        int localId = symbolIds.size();
+        symbolIds.add(symbolId);
+        localIds.put(symbolId, localId);
+        return localId;
+    }
+
+    public int add(String symbol) {
+        return add(SymbolTable.intern(symbol));
+    }
+
+    public int getSymbolId(int localId) {
+        return symbolIds.getInt(localId);
+    }
+
+    public int getComponentsLocalId(int componentsId) {
+        return componentLocalIds.get(componentsId);
+    }
+
+    public int addComponents(int componentsId) {
+        int localId = componentIds.size();
+        componentIds.add(componentsId);
+        componentLocalIds.put(componentsId, localId);
+        return localId;
+    }
+
+    public int addComponents(String itemComponents) {
+        return addComponents(ComponentTable.intern(itemComponents));
+    }
+
+    public boolean hasComponents(int localId) {
+        return localId >= 0 && localId < componentIds.size();
+    }
+
+    public int getComponentsId(int localId) {
+        return componentIds.getInt(localId);
+    }
+}
@@ -0,0 +1,445 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class LogIndex {
+    private static final int MAGIC = 0x434C4958; // "CLIX"
+    private static final int FORMAT_VERSION = 8;
+    static final int TIMESTAMP_BLOCK_SIZE = 64; // Records per entry in the sparse timestamp index
+
+    // Posting lists hold record offsets (position of the record within its partition), always ascending
+    // Player postings are keyed by UUID, records migrated from before UUIDs were logged by playerKey; the two
+    // never collide, a UUID has dashes and a player name cannot
+    private final Map<String, IntArrayList> playerPostings = new HashMap<>();
+    private final Map<String, String> playerUuids = new HashMap<>(); // playerKey -> UUID it was last logged with
+    // Dimension -> packed chunk position -> packed container position -> postings
+    private final Map<String, Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>>> spatialPostings = new HashMap<>();
+    // Item id -> postings, kept apart for added and removed items
+    private final Map<String, IntArrayList> itemAddedPostings = new HashMap<>();
+    private final Map<String, IntArrayList> itemRemovedPostings = new HashMap<>();
+    // Sparse timestamp index: highest timestamp up to the end of each block and lowest timestamp inside it
+    private final LongArrayList blockMaxTimestamps = new LongArrayList();
+    private final LongArrayList blockMinTimestamps = new LongArrayList();
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private int recordCount = 0;
+    private LogStats stats = new LogStats(); // Rollups of the same records, persisted with the index
+
+    // Leading part of the index file, enough to skip a sealed day without reading its postings; the day's
+    // rollups follow it and are only read when they are needed
+    public record Summary(int recordCount, long minTimestamp, long maxTimestamp, LogBloomFilter filter,
+                          Map<String, String> playerUuids) {
+    }
+
+    @FunctionalInterface
+    public interface ContainerConsumer {
+        void accept(long packedPos, IntList postings);
+    }
+
+    public void add(ChestAccessLog log) {
+        int offset = recordCount++;
+        String playerUuid = log.getPlayerUuid();
+        if (playerUuid != null) {
+            playerUuids.put(playerKey(log.getPlayerName()), playerUuid);
+        }
+        playerPostings.computeIfAbsent(playerUuid != null ? playerUuid : playerKey(log.getPlayerName()),
+                key -> new IntArrayList()).add(offset);
+
+        BlockPos pos = log.getPosition();
+        spatialPostings.computeIfAbsent(log.getDimension(), key -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4), key -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(pos.asLong(), key -> new IntArrayList())
+                .add(offset);
+
+        for (int i = 0; i < log.getItemDeltaSize(); i++) {
+            String itemId = SymbolTable.get(log.getItemDeltaId(i));
+            addItemPosting(log.getItemDeltaCount(i) > 0 ? itemAddedPostings : itemRemovedPostings, itemId, offset);
+        }
+
+        stats.add(log);
+
+        long timestamp = log.getTimestamp();
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+
+        int block = offset / TIMESTAMP_BLOCK_SIZE;
+        if (block == blockMaxTimestamps.size()) {
+            blockMaxTimestamps.add(maxTimestamp);
+            blockMinTimestamps.add(timestamp);
+        } else {
+            blockMaxTimestamps.set(block, maxTimestamp);
+            if (timestamp < blockMinTimestamps.getLong(block)) {
+                blockMinTimestamps.set(block, timestamp);
+            }
+        }
+    }
+
+    public boolean overlaps(long from, long to) {
+        return recordCount > 0 && minTimestamp <= to && maxTimestamp >= from;
+    }
+
+    public int getFirstOffsetAtOrAfter(long from) {
+        // Block maxima never decrease, so the first block that can contain the timestamp is a binary search away
+        int low = 0;
+        int high = blockMaxTimestamps.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blockMaxTimestamps.getLong(mid) < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.min(low * TIMESTAMP_BLOCK_SIZE, recordCount);
+    }
+
+    public boolean isBlockAfter(int offset, long to) {
+        // Records are appended as they happen, so once a whole block is past the window the rest is too
+        return offset % TIMESTAMP_BLOCK_SIZE == 0 && blockMinTimestamps.getLong(offset / TIMESTAMP_BLOCK_SIZE) > to;
+    }
+
+    public IntList getPlayerPostings(String playerUuid, String playerName) {
+        // playerUuid may be null if no record of the name has one; records without a UUID are found by name
+        IntList byName = getPostings(playerKey(playerName));
+        return playerUuid != null ? union(getPostings(playerUuid), byName) : byName;
+    }
+
+    private IntList getPostings(String playerKey) {
+        IntArrayList postings = playerPostings.get(playerKey);
+        return postings != null ? postings : IntLists.emptyList();
+    }
+
+    public IntList getItemPostings(String itemId, boolean added) {
+        IntArrayList postings = (added ? itemAddedPostings : itemRemovedPostings).get(itemId);
+        return postings != null ? postings : IntLists.emptyList();
+    }
+
+    public IntList getItemPostings(String itemId) {
+        return union(getItemPostings(itemId, true), getItemPostings(itemId, false));
+    }
+
+    public IntList getPositionPostings(BlockPos pos, String dimension) {
+        Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>> chunks = spatialPostings.get(dimension);
+        if (chunks == null) {
+            return IntLists.emptyList();
+        }
+
+        Long2ObjectOpenHashMap<IntArrayList> containers = chunks.get(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4));
+        IntArrayList postings = containers != null ? containers.get(pos.asLong()) : null;
+        return postings != null ? postings : IntLists.emptyList();
+    }
+
+    public void forEachContainerInBox(String dimension, BlockPos min, BlockPos max, ContainerConsumer consumer) {
+        Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>> chunks = spatialPostings.get(dimension);
+        if (chunks == null) {
+            return;
+        }
+
+        int minChunkX = min.getX() >> 4;
+        int minChunkZ = min.getZ() >> 4;
+        int maxChunkX = max.getX() >> 4;
+        int maxChunkZ = max.getZ() >> 4;
+        long chunksInBox = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+
+        // Probe every chunk of a small box, but walk the populated chunks when the box is huge
+        if (chunksInBox <= chunks.size()) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Long2ObjectOpenHashMap<IntArrayList> containers = chunks.get(ChunkPos.toLong(chunkX, chunkZ));
+                    if (containers != null) {
+                        acceptContainersInBox(containers, min, max, consumer);
+                    }
+                }
+            }
+        } else {
+            for (Long2ObjectMap.Entry<Long2ObjectOpenHashMap<IntArrayList>> chunk : chunks.long2ObjectEntrySet()) {
+                int chunkX = ChunkPos.getPackedX(chunk.getLongKey());
+                int chunkZ = ChunkPos.getPackedZ(chunk.getLongKey());
+                if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                    acceptContainersInBox(chunk.getValue(), min, max, consumer);
+                }
+            }
+        }
+    }
+
+    private static void acceptContainersInBox(Long2ObjectOpenHashMap<IntArrayList> containers, BlockPos min, BlockPos max,
+                                              ContainerConsumer consumer) {
+        for (Long2ObjectMap.Entry<IntArrayList> container : containers.long2ObjectEntrySet()) {
+            long packedPos = container.getLongKey();
+            int x = BlockPos.unpackLongX(packedPos);
+            int y = BlockPos.unpackLongY(packedPos);
+            int z = BlockPos.unpackLongZ(packedPos);
+            if (x >= min.getX() && x <= max.getX() && y >= min.getY() && y <= max.getY()
+                    && z >= min.getZ() && z <= max.getZ()) {
+                consumer.accept(packedPos, container.getValue());
+            }
+        }
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public Map<String, String> getPlayerUuids() {
+        return playerUuids;
+    }
+
+    public LogStats getStats() {
+        return stats;
+    }
+
+    public Summary summarize() {
+        return new Summary(recordCount, minTimestamp, maxTimestamp, buildFilter(), Map.copyOf(playerUuids));
+    }
+
+    private LogBloomFilter buildFilter() {
+        int keyCount = playerPostings.size() + itemAddedPostings.size() + itemRemovedPostings.size();
+        for (Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>> chunks : spatialPostings.values()) {
+            keyCount += chunks.size();
+            for (Long2ObjectOpenHashMap<IntArrayList> containers : chunks.values()) {
+                keyCount += containers.size();
+            }
+        }
+
+        LogBloomFilter filter = new LogBloomFilter(keyCount);
+        playerPostings.keySet().forEach(filter::addPlayer);
+        itemAddedPostings.keySet().forEach(filter::addItem);
+        itemRemovedPostings.keySet().forEach(filter::addItem);
+        for (Map.Entry<String, Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>>> dimension : spatialPostings.entrySet()) {
+            for (Long2ObjectMap.Entry<Long2ObjectOpenHashMap<IntArrayList>> chunk : dimension.getValue().long2ObjectEntrySet()) {
+                filter.addChunk(dimension.getKey(), chunk.getLongKey());
+                for (Long2ObjectMap.Entry<IntArrayList> container : chunk.getValue().long2ObjectEntrySet()) {
+                    filter.addContainer(dimension.getKey(), container.getLongKey());
+                }
+            }
+        }
+        return filter;
+    }
+
+    public static IntList intersect(IntList first, IntList second) {
+        // Both lists are ascending, so a single merge pass is enough
+        IntArrayList result = new IntArrayList(Math.min(first.size(), second.size()));
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            int a = first.getInt(i);
+            int b = second.getInt(j);
+            if (a == b) {
+                result.add(a);
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static IntList union(IntList first, IntList second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        if (second.isEmpty()) {
+            return first;
+        }
+
+        IntArrayList result = new IntArrayList(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() || j < second.size()) {
+            int a = i < first.size() ? first.getInt(i) : Integer.MAX_VALUE;
+            int b = j < second.size() ? second.getInt(j) : Integer.MAX_VALUE;
+            result.add(Math.min(a, b));
+            if (a <= b) {
+                i++;
+            }
+            if (b <= a) {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private static void addItemPosting(Map<String, IntArrayList> postings, String itemId, int offset) {
+        IntArrayList itemPostings = postings.computeIfAbsent(itemId, key -> new IntArrayList());
+        // The same item can show up twice in one record, the offset is only listed once
+        if (itemPostings.isEmpty() || itemPostings.getInt(itemPostings.size() - 1) != offset) {
+            itemPostings.add(offset);
+        }
+    }
+
+    public static String playerKey(String playerName) {
+        return playerName.toLowerCase(Locale.ROOT);
+    }
+
+    public Summary write(DataOutput output) throws IOException {
+        // The summary leads the file so startup can read it without the postings, see readSummary
+        Summary summary = summarize();
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(recordCount);
+        output.writeLong(minTimestamp);
+        output.writeLong(maxTimestamp);
+        summary.filter().write(output);
+        output.writeInt(playerUuids.size());
+        for (Map.Entry<String, String> entry : playerUuids.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeUTF(entry.getValue());
+        }
+        stats.write(output);
+
+        output.writeInt(blockMaxTimestamps.size());
+        for (int i = 0; i < blockMaxTimestamps.size(); i++) {
+            output.writeLong(blockMaxTimestamps.getLong(i));
+            output.writeLong(blockMinTimestamps.getLong(i));
+        }
+
+        output.writeInt(playerPostings.size());
+        for (Map.Entry<String, IntArrayList> entry : playerPostings.entrySet()) {
+            output.writeUTF(entry.getKey());
+            writePostings(output, entry.getValue());
+        }
+
+        writeItemPostings(output, itemAddedPostings);
+        writeItemPostings(output, itemRemovedPostings);
+
+        output.writeInt(spatialPostings.size());
+        for (Map.Entry<String, Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>>> dimension : spatialPostings.entrySet()) {
+            output.writeUTF(dimension.getKey());
+            output.writeInt(dimension.getValue().size());
+            for (Long2ObjectMap.Entry<Long2ObjectOpenHashMap<IntArrayList>> chunk : dimension.getValue().long2ObjectEntrySet()) {
+                output.writeLong(chunk.getLongKey());
+                output.writeInt(chunk.getValue().size());
+                for (Long2ObjectMap.Entry<IntArrayList> container : chunk.getValue().long2ObjectEntrySet()) {
+                    output.writeLong(container.getLongKey());
+                    writePostings(output, container.getValue());
+                }
+            }
+        }
+        return summary;
+    }
+
+    public static Summary readSummary(DataInput input, LogStats totals) throws IOException {
+        // totals may be null to stop after the summary, otherwise the day's rollups are added to it
+        Summary summary = readSummary(input);
+        if (totals != null) {
+            totals.add(LogStats.read(input));
+        }
+        return summary;
+    }
+
+    public static LogStats readStats(DataInput input, int recordCount) throws IOException {
+        // null if the file describes another number of records than expected
+        return readSummary(input).recordCount() == recordCount ? LogStats.read(input) : null;
+    }
+
+    private static Summary readSummary(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a chest log index file");
+        }
+        int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported chest log index version " + version);
+        }
+        int recordCount = input.readInt();
+        long minTimestamp = input.readLong();
+        long maxTimestamp = input.readLong();
+        LogBloomFilter filter = LogBloomFilter.read(input);
+        int playerCount = input.readInt();
+        Map<String, String> playerUuids = new HashMap<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            playerUuids.put(input.readUTF(), input.readUTF());
+        }
+        return new Summary(recordCount, minTimestamp, maxTimestamp, filter, playerUuids);
+    }
+
+    public static LogIndex read(DataInput input) throws IOException {
+        Summary summary = readSummary(input);
+        LogIndex index = new LogIndex();
+        index.recordCount = summary.recordCount();
+        index.minTimestamp = summary.minTimestamp();
+        index.maxTimestamp = summary.maxTimestamp();
+        index.playerUuids.putAll(summary.playerUuids());
+        index.stats = LogStats.read(input);
+
+        int blockCount = input.readInt();
+        for (int i = 0; i < blockCount; i++) {
+            index.blockMaxTimestamps.add(input.readLong());
+            index.blockMinTimestamps.add(input.readLong());
+        }
+
+        int playerCount = input.readInt();
+        for (int i = 0; i < playerCount; i++) {
+            index.playerPostings.put(input.readUTF(), readPostings(input));
+        }
+
+        readItemPostings(input, index.itemAddedPostings);
+        readItemPostings(input, index.itemRemovedPostings);
+
+        int dimensionCount = input.readInt();
+        for (int i = 0; i < dimensionCount; i++) {
+            String dimension = input.readUTF();
+            int chunkCount = input.readInt();
+            Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<IntArrayList>> chunks = new Long2ObjectOpenHashMap<>(chunkCount);
+            for (int j = 0; j < chunkCount; j++) {
+                long chunkKey = input.readLong();
+                int containerCount = input.readInt();
+                Long2ObjectOpenHashMap<IntArrayList> containers = new Long2ObjectOpenHashMap<>(containerCount);
+                for (int k = 0; k < containerCount; k++) {
+                    long packedPos = input.readLong();
+                    containers.put(packedPos, readPostings(input));
+                }
+                chunks.put(chunkKey, containers);
+            }
+            index.spatialPostings.put(dimension, chunks);
+        }
+        return index;
+    }
+
+    private static void writeItemPostings(DataOutput output, Map<String, IntArrayList> postings) throws IOException {
+        output.writeInt(postings.size());
+        for (Map.Entry<String, IntArrayList> entry : postings.entrySet()) {
+            output.writeUTF(entry.getKey());
+            writePostings(output, entry.getValue());
+        }
+    }
+
+    private static void readItemPostings(DataInput input, Map<String, IntArrayList> postings) throws IOException {
+        int itemCount = input.readInt();
+        for (int i = 0; i < itemCount; i++) {
+            postings.put(input.readUTF(), readPostings(input));
+        }
+    }
+
+    private static void writePostings(DataOutput output, IntArrayList postings) throws IOException {
+        output.writeInt(postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            output.writeInt(postings.getInt(i));
+        }
+    }
+
+    private static IntArrayList readPostings(DataInput input) throws IOException {
+        int size = input.readInt();
+        IntArrayList postings = new IntArrayList(size);
+        for (int i = 0; i < size; i++) {
+            postings.add(input.readInt());
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,465 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class LogJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024; // Start another part of the same day after 64 MiB
+    static final int MAX_RECORD_BYTES = 1024 * 1024; // Anything larger is treated as corruption
+
+    // Segments start with a header and hold length-prefixed frames: symbol frames add the next string to the
+    // segment's dictionary, component frames add item component data, record frames reference both by id.
+    // Files with another header are left alone and not read.
+    static final int SEGMENT_MAGIC = 0x434C4F47; // "CLOG"
+    static final int SEGMENT_FORMAT_VERSION = 5;
+    static final int SEGMENT_HEADER_BYTES = 8;
+    static final byte FRAME_RECORD = 0;
+    static final byte FRAME_SYMBOL = 1;
+    static final byte FRAME_COMPONENTS = 2;
+
+    private final Path directory;
+    private final List<Segment> segments = new ArrayList<>(); // Sorted by day, then part
+
+    // Segment files are named after the day they cover, e.g. "2025-06-01.log" or "2025-06-01.2.log"
+    private static class Segment {
+        final Path path;
+        final long day;
+        final int part;
+        long size;
+        boolean damaged; // Framing or a record broke inside the file, records are never appended after that point
+        LogDictionary dictionary; // Only for the segment being appended to, loaded from the file on first use
+
+        Segment(Path path, long day, int part, long size) {
+            this.path = path;
+            this.day = day;
+            this.part = part;
+            this.size = size;
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexReader<T> {
+        T read(DataInputStream input) throws IOException;
+    }
+
+    public LogJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(SEGMENT_SUFFIX)) {
+                    continue;
+                }
+
+                Segment segment = parseSegment(file);
+                if (segment != null) {
+                    segments.add(segment);
+                }
+            }
+        }
+        segments.sort(Comparator.<Segment>comparingLong(s -> s.day).thenComparingInt(s -> s.part));
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public LongList getDays() {
+        LongList days = new LongArrayList();
+        for (Segment segment : segments) {
+            if (days.isEmpty() || days.getLong(days.size() - 1) != segment.day) {
+                days.add(segment.day);
+            }
+        }
+        return days;
+    }
+
+    public void readDay(long day, Consumer<ChestAccessLog> consumer) throws IOException {
+        for (Segment segment : segments) {
+            if (segment.day == day) {
+                readSegment(segment, consumer);
+            }
+        }
+    }
+
+    public void append(Collection<ChestAccessLog> logs) throws IOException {
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        // Batches almost always belong to a single day, but a batch written around midnight spans two
+        Map<Long, List<ChestAccessLog>> logsByDay = new LinkedHashMap<>();
+        for (ChestAccessLog log : logs) {
+            logsByDay.computeIfAbsent(LogPartition.dayOf(log.getTimestamp()), day -> new ArrayList<>()).add(log);
+        }
+
+        for (Map.Entry<Long, List<ChestAccessLog>> entry : logsByDay.entrySet()) {
+            appendToDay(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public int dropBefore(long day) {
+        // Expiring history is just deleting whole files, live segments are never read or rewritten.
+        // A segment stays listed until its file is gone, so a failed delete is tried again on the next call
+        int dropped = 0;
+        while (!segments.isEmpty() && segments.get(0).day < day) {
+            Segment segment = segments.get(0);
+            try {
+                Files.deleteIfExists(segment.path);
+                Files.deleteIfExists(getIndexPath(segment.day));
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete expired chest log segment {}, will retry: {}", segment.path.getFileName(), e.getMessage());
+                break;
+            }
+            segments.remove(0);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    public void clear() throws IOException {
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.path);
+            Files.deleteIfExists(getIndexPath(segment.day));
+        }
+        segments.clear();
+    }
+
+    public MappedLogDay mapDay(long day) throws IOException {
+        List<ByteBuffer> mappings = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.day != day || segment.size == 0) {
+                continue;
+            }
+            // The mapping stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                mappings.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size));
+            }
+        }
+        return new MappedLogDay(mappings);
+    }
+
+    public LogIndex readIndex(long day) {
+        return readIndexFile(day, LogIndex::read);
+    }
+
+    public LogIndex.Summary readIndexSummary(long day, LogStats totals) {
+        // Only the leading part of the file, the postings stay on disk until a query gets past the filter
+        return readIndexFile(day, input -> LogIndex.readSummary(input, totals));
+    }
+
+    public LogStats readIndexStats(long day, int recordCount) {
+        // Also used for days whose segments changed since, the record count tells if the rollups still fit
+        Path indexPath = getIndexPath(day);
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            input.readLong(); // Stamp, see writeIndex
+            return LogIndex.readStats(input, recordCount);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read chest log statistics from {}: {}", indexPath.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T readIndexFile(long day, IndexReader<T> reader) {
+        Path indexPath = getIndexPath(day);
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            // Records appended after the index was written (or a cut-off tail) make it stale
+            long indexedBytes = input.readLong();
+            if (indexedBytes != getDayBytes(day)) {
+                return null;
+            }
+            return reader.read(input);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read chest log index {}, it will be rebuilt: {}", indexPath.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    public void writeIndex(long day, byte[] indexData) throws IOException {
+        // Write to a temporary file first so a crash never leaves a half-written index behind
+        Path indexPath = getIndexPath(day);
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(tempPath))) {
+            // Stamp the size of the day's segments so startup can trust the index without reading them
+            output.writeLong(getDayBytes(day));
+            output.write(indexData);
+        }
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long getDayBytes(long day) {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            if (segment.day == day) {
+                bytes += segment.size;
+            }
+        }
+        return bytes;
+    }
+
+    private Path getIndexPath(long day) {
+        return directory.resolve(LocalDate.ofEpochDay(day) + INDEX_SUFFIX);
+    }
+
+    private void appendToDay(long day, List<ChestAccessLog> logs) throws IOException {
+        Segment segment = getWritableSegment(day);
+        if (segment.dictionary == null) {
+            LogDictionary dictionary = new LogDictionary();
+            readSegment(segment, dictionary, null, true);
+            if (segment.damaged) {
+                segment = getWritableSegment(day); // Continues the day in a new part
+            } else {
+                segment.dictionary = dictionary;
+            }
+        }
+        LogDictionary dictionary = segment.dictionary;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(logs.size() * 48);
+        DataOutputStream output = new DataOutputStream(buffer);
+        ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(64);
+        DataOutputStream recordOutput = new DataOutputStream(recordBuffer);
+
+        for (ChestAccessLog log : logs) {
+            // Strings seen for the first time in this segment are defined right before the record using them
+            log.forEachSymbolId(symbolId -> {
+                if (dictionary.getLocalId(symbolId) < 0) {
+                    dictionary.add(symbolId);
+                    writeSymbolFrame(output, SymbolTable.get(symbolId));
+                }
+            });
+            log.forEachComponentsId(componentsId -> {
+                if (dictionary.getComponentsLocalId(componentsId) < 0) {
+                    dictionary.addComponents(componentsId);
+                    writeComponentFrame(output, ComponentTable.get(componentsId));
+                }
+            });
+
+            recordBuffer.reset();
+            recordOutput.writeByte(FRAME_RECORD);
+            log.writeCompact(recordOutput, dictionary);
+            output.writeInt(recordBuffer.size());
+            recordBuffer.writeTo(output);
+        }
+
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            segment.dictionary = null; // Symbols of this batch may not have reached the file, reload it next time
+            throw e;
+        }
+        segment.size += buffer.size();
+    }
+
+    private static void writeSymbolFrame(DataOutputStream output, String symbol) {
+        byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+        try {
+            output.writeInt(1 + bytes.length);
+            output.writeByte(FRAME_SYMBOL);
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory stream only
+        }
+    }
+
+    private static void writeComponentFrame(DataOutputStream output, String components) {
+        byte[] bytes = components.getBytes(StandardCharsets.UTF_8);
+        try {
+            output.writeInt(1 + bytes.length);
+            output.writeByte(FRAME_COMPONENTS);
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory stream only
+        }
+    }
+
+    private Segment getWritableSegment(long day) throws IOException {
+        Segment latest = null;
+        int insertAt = segments.size();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.day == day) {
+                latest = segment;
+                break;
+            }
+            if (segment.day < day) {
+                break;
+            }
+            insertAt = i;
+        }
+
+        if (latest != null && latest.size < MAX_SEGMENT_BYTES && !latest.damaged) {
+            return latest;
+        }
+
+        // Full and damaged segments are continued in a new part; skip over names taken by files that are not read
+        int part = latest != null ? latest.part + 1 : 0;
+        Path path = getSegmentPath(day, part);
+        while (Files.exists(path)) {
+            path = getSegmentPath(day, ++part);
+        }
+        Segment segment = new Segment(path, day, part, SEGMENT_HEADER_BYTES);
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(segment.path, StandardOpenOption.CREATE_NEW))) {
+            output.writeInt(SEGMENT_MAGIC);
+            output.writeInt(SEGMENT_FORMAT_VERSION);
+        }
+        segment.dictionary = new LogDictionary();
+
+        // New parts go right after the previous part of the same day
+        segments.add(latest != null ? segments.indexOf(latest) + 1 : insertAt, segment);
+        return segment;
+    }
+
+    private Path getSegmentPath(long day, int part) {
+        return directory.resolve(LocalDate.ofEpochDay(day) + (part > 0 ? "." + part : "") + SEGMENT_SUFFIX);
+    }
+
+    private void readSegment(Segment segment, Consumer<ChestAccessLog> consumer) throws IOException {
+        readSegment(segment, new LogDictionary(), consumer, false);
+    }
+
+    private void readSegment(Segment segment, LogDictionary dictionary, Consumer<ChestAccessLog> consumer,
+                             boolean appending) throws IOException {
+        // consumer may be null to only load the dictionary; appending means new records follow this read
+        long position = SEGMENT_HEADER_BYTES;
+        boolean tornTail = false;
+        LogRecordView view = new LogRecordView();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+            input.skipNBytes(SEGMENT_HEADER_BYTES);
+
+            while (position < segment.size) {
+                if (segment.size - position < 4) {
+                    tornTail = true;
+                    break;
+                }
+
+                int length = input.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    // Nothing after this point can be framed; it is kept on disk, but never appended to
+                    LOGGER.warn("Invalid record length {} in {}, ignoring rest of segment", length, segment.path.getFileName());
+                    segment.damaged = true;
+                    break;
+                }
+                if (segment.size - position - 4 < length) {
+                    tornTail = true;
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+                long frame = position;
+                position += 4 + length;
+
+                if (payload[0] == FRAME_SYMBOL) {
+                    dictionary.add(new String(payload, 1, length - 1, StandardCharsets.UTF_8));
+                } else if (payload[0] == FRAME_COMPONENTS) {
+                    dictionary.addComponents(new String(payload, 1, length - 1, StandardCharsets.UTF_8));
+                } else if (!view.reset(ByteBuffer.wrap(payload), 1, length - 1, dictionary)) {
+                    // Decided here once instead of on every mapped walk: the segment ends at this record from now
+                    // on, so mappings and indexes built after this read never count the rest of it
+                    LOGGER.warn("Damaged record in {}, ignoring rest of segment", segment.path.getFileName());
+                    segment.damaged = true;
+                    segment.size = frame;
+                    break;
+                } else if (consumer != null) {
+                    consumer.accept(view.toLog());
+                }
+            }
+        }
+
+        if (!tornTail) {
+            return;
+        }
+        if (!appending) {
+            LOGGER.warn("Incomplete record at the end of {}, ignoring it", segment.path.getFileName());
+            return;
+        }
+
+        // A record cut off by a crash while it was written; nothing valid follows it, and new records
+        // have to start where it started
+        LOGGER.warn("Cutting off an incomplete record at the end of {}", segment.path.getFileName());
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private static Segment parseSegment(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        String[] parts = name.substring(0, name.length() - SEGMENT_SUFFIX.length()).split("\\.");
+
+        long day;
+        int part;
+        try {
+            day = LocalDate.parse(parts[0]).toEpochDay();
+            part = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            LOGGER.warn("Ignoring unknown file in log directory: {}", name);
+            return null;
+        }
+
+        long size = Files.size(path);
+        if (size < SEGMENT_HEADER_BYTES) {
+            // Created but the header never made it to disk, so there are no records to lose
+            try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(path))) {
+                output.writeInt(SEGMENT_MAGIC);
+                output.writeInt(SEGMENT_FORMAT_VERSION);
+            }
+            return new Segment(path, day, part, SEGMENT_HEADER_BYTES);
+        }
+
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(path))) {
+            if (input.readInt() != SEGMENT_MAGIC || input.readInt() != SEGMENT_FORMAT_VERSION) {
+                LOGGER.warn("Ignoring chest log segment {} in an unknown format", name);
+                return null;
+            }
+        }
+        return new Segment(path, day, part, size);
+    }
+}
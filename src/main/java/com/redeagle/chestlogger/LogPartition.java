@@ -0,0 +1,175 @@
+package com.redeagle.chestlogger;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogPartition {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final long day; // Days since epoch (UTC), matches the day in the segment file names
+    private List<ChestAccessLog> logs = new ArrayList<>(); // null while only the index is in memory
+    private int firstLogOffset = 0; // Offset of the first record in logs, the ones before it are only on disk
+    private LogIndex index = new LogIndex(); // null while only the summary of a sealed day is in memory
+    private LogIndex.Summary summary; // Matches the index file on disk, null while the day is still changing
+    private MappedLogDay mapped; // Read path for sealed days that are not loaded, mapped on first use
+    private int persistedIndexSize = -1; // Record count of the index file on disk, -1 if there is none
+
+    public LogPartition(long day) {
+        this.day = day;
+    }
+
+    public static LogPartition ofSummary(long day, LogIndex.Summary persistedSummary) {
+        // Records and postings stay on disk until a query gets past the filter, see load and setIndex
+        LogPartition partition = new LogPartition(day);
+        partition.logs = null;
+        partition.index = null;
+        partition.summary = persistedSummary;
+        partition.persistedIndexSize = persistedSummary.recordCount();
+        return partition;
+    }
+
+    public static long dayOf(long timestamp) {
+        return Math.floorDiv(timestamp, MILLIS_PER_DAY);
+    }
+
+    public void add(ChestAccessLog log) {
+        // A day that is not loaded collects new records after the ones on disk, see getFirstLogOffset
+        if (logs == null) {
+            logs = new ArrayList<>();
+            firstLogOffset = index.getRecordCount();
+        }
+        logs.add(log);
+        index.add(log);
+        summary = null; // The filter does not know the new record until the index is written again
+    }
+
+    public void addWithoutIndex(ChestAccessLog log) {
+        // Used while loading, the index is attached or rebuilt once the whole day has been read
+        logs.add(log);
+    }
+
+    public boolean isLoaded() {
+        return logs != null && firstLogOffset == 0;
+    }
+
+    public void load(List<ChestAccessLog> loadedLogs) {
+        if (logs != null && firstLogOffset > 0) {
+            // Records added since are taken from memory, they may not be written yet
+            List<ChestAccessLog> merged = new ArrayList<>(loadedLogs.subList(0, Math.min(firstLogOffset, loadedLogs.size())));
+            merged.addAll(logs);
+            loadedLogs = merged;
+            firstLogOffset = 0;
+        }
+        logs = loadedLogs;
+        mapped = null; // The day may grow from here on, an older mapping would miss records
+        if (index == null || loadedLogs.size() != index.getRecordCount()) {
+            // Rebuilding from the records at hand is cheaper than reading the index file; a count mismatch
+            // means the segment was damaged since the index was written and offsets would not line up
+            rebuildIndex();
+        }
+    }
+
+    public void unload() {
+        logs = null;
+        firstLogOffset = 0;
+    }
+
+    public void rebuildIndex() {
+        index = new LogIndex();
+        for (ChestAccessLog log : logs) {
+            index.add(log);
+        }
+        if (summary != null && summary.recordCount() != index.getRecordCount()) {
+            summary = null; // Describes records that are gone
+        }
+    }
+
+    public boolean hasIndex() {
+        return index != null;
+    }
+
+    public void setIndex(LogIndex index) {
+        this.index = index;
+    }
+
+    public boolean evictIndex() {
+        // Only when the summary can stand in for it and the index can be read back from disk
+        if (summary == null || logs != null || !isIndexPersisted()) {
+            return false;
+        }
+        index = null;
+        return true;
+    }
+
+    public boolean isIndexPersisted() {
+        return persistedIndexSize == size();
+    }
+
+    public void markIndexPersisted(LogIndex.Summary persistedSummary) {
+        persistedIndexSize = persistedSummary.recordCount();
+        summary = persistedSummary;
+    }
+
+    // Without a summary the day has no filter and every key might be in it
+    public boolean mightContainPlayer(String playerUuid, String playerName) {
+        return summary == null || playerUuid != null && summary.filter().mightContainPlayer(playerUuid)
+                || summary.filter().mightContainPlayer(playerName);
+    }
+
+    public boolean mightContainItem(String itemId) {
+        return summary == null || summary.filter().mightContainItem(itemId);
+    }
+
+    public boolean mightContainContainer(BlockPos pos, String dimension) {
+        return summary == null || summary.filter().mightContainContainer(dimension, pos.asLong());
+    }
+
+    public boolean mightContainBox(String dimension, BlockPos min, BlockPos max) {
+        return summary == null || summary.filter().mightContainChunks(dimension,
+                min.getX() >> 4, min.getZ() >> 4, max.getX() >> 4, max.getZ() >> 4);
+    }
+
+    public boolean overlaps(long from, long to) {
+        if (index != null) {
+            return index.overlaps(from, to);
+        }
+        return summary.recordCount() > 0 && summary.minTimestamp() <= to && summary.maxTimestamp() >= from;
+    }
+
+    public long getDay() {
+        return day;
+    }
+
+    public List<ChestAccessLog> getLogs() {
+        // The whole day when loaded, otherwise only the records added since the day was last read
+        return logs;
+    }
+
+    public int getFirstLogOffset() {
+        // Records before this offset have to be read from disk
+        return logs != null ? firstLogOffset : size();
+    }
+
+    public MappedLogDay getMapped() {
+        return mapped;
+    }
+
+    public void setMapped(MappedLogDay mapped) {
+        this.mapped = mapped;
+    }
+
+    public LogIndex getIndex() {
+        return index;
+    }
+
+    public LogStats getStats() {
+        // Only while the index is in memory, sealed days keep their rollups in the index file
+        return index.getStats();
+    }
+
+    public int size() {
+        return index != null ? index.getRecordCount() : summary.recordCount();
+    }
+}
@@ -0,0 +1,61 @@
+package com.redeagle.chestlogger;
+
+import net.minecraft.util.math.BlockPos;
+
+// Filters of /chestlog search, every filter that is null (or the full time range) matches everything;
+// itemText is a fragment of an item id, no index can answer it; playerUuid is filled in by the manager from
+// playerName, see ChestLogManager.resolvePlayer
+public record LogQuery(String playerName, String playerUuid, String itemId, String itemText, Boolean added,
+                       String dimension, BlockPos min, BlockPos max, long from, long to) {
+
+    public LogQuery withPlayerUuid(String uuid) {
+        return new LogQuery(playerName, uuid, itemId, itemText, added, dimension, min, max, from, to);
+    }
+
+    public boolean hasBox() {
+        return min != null && max != null;
+    }
+
+    public boolean matches(LogRecord log) {
+        // Works on symbol ids and the packed position, so records on disk are tested without decoding them
+        if (log.getTimestamp() < from || log.getTimestamp() > to) {
+            return false;
+        }
+        if (playerName != null && !matchesPlayer(log)) {
+            return false;
+        }
+        if (dimension != null && !SymbolTable.get(log.getDimensionId()).equals(dimension)) {
+            return false;
+        }
+        if (hasBox()) {
+            long pos = log.getPackedPos();
+            int x = BlockPos.unpackLongX(pos);
+            int y = BlockPos.unpackLongY(pos);
+            int z = BlockPos.unpackLongZ(pos);
+            if (x < min.getX() || x > max.getX() || y < min.getY() || y > max.getY() || z < min.getZ() || z > max.getZ()) {
+                return false;
+            }
+        }
+        return itemId == null && itemText == null || hasItem(log);
+    }
+
+    private boolean matchesPlayer(LogRecord log) {
+        // Records with a UUID match it whatever name they were logged under, older ones match the name
+        // case-insensitively like LogIndex.playerKey
+        if (playerUuid != null && log.getPlayerUuidId() >= 0) {
+            return SymbolTable.get(log.getPlayerUuidId()).equals(playerUuid);
+        }
+        return SymbolTable.get(log.getPlayerId()).equalsIgnoreCase(playerName);
+    }
+
+    private boolean hasItem(LogRecord log) {
+        for (int i = 0; i < log.getItemDeltaSize(); i++) {
+            String id = SymbolTable.get(log.getItemDeltaId(i));
+            if ((itemId == null || id.equals(itemId)) && (itemText == null || id.contains(itemText))
+                    && (added == null || log.getItemDeltaCount(i) > 0 == added)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,22 @@
+package com.redeagle.chestlogger;
+
+// What filters look at, implemented by records in memory and by views over mapped segments so a
+// record on disk only becomes a ChestAccessLog once it matched; strings are SymbolTable ids
+public interface LogRecord {
+    long getTimestamp();
+
+    int getPlayerId();
+
+    int getPlayerUuidId(); // -1 if the record only has the player's name
+
+
+    int getDimensionId();
+
+    long getPackedPos(); // See BlockPos.asLong
+
+    int getItemDeltaSize();
+
+    int getItemDeltaId(int index);
+
+    int getItemDeltaCount(int index);
+}
@@ -0,0 +1,135 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.minecraft.util.math.BlockPos;
+
+import java.nio.ByteBuffer;
+
+public class LogRecordView implements LogRecord {
+    // Offsets of the fixed fields at the start of every record
+    private static final int TIMESTAMP_OFFSET = 0;
+    private static final int X_OFFSET = 8;
+    private static final int Y_OFFSET = 12;
+    private static final int Z_OFFSET = 16;
+    private static final int VARINTS_OFFSET = 20;
+
+    private ByteBuffer buffer;
+    private int position;
+    private int length;
+    private LogDictionary dictionary;
+
+    // The variable part is decoded into arrays reused for every record
+    private int readPosition;
+    private int playerId;
+    private int playerUuidId;
+    private int dimensionId;
+    private int deltaCount;
+    private int[] itemIds = new int[8];
+    private int[] itemCounts = new int[8];
+
+    // Repointed at the next record instead of allocating one object per record; returns false for a record
+    // that cannot be decoded, see LogJournal.readSegment and MappedLogDay for what each read path does then
+    boolean reset(ByteBuffer buffer, int position, int length, LogDictionary dictionary) {
+        this.buffer = buffer;
+        this.position = position;
+        this.length = length;
+        this.dictionary = dictionary;
+        if (length < VARINTS_OFFSET) {
+            return false;
+        }
+        try {
+            parse();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long getTimestamp() {
+        return buffer.getLong(position + TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public long getPackedPos() {
+        return BlockPos.asLong(buffer.getInt(position + X_OFFSET), buffer.getInt(position + Y_OFFSET),
+                buffer.getInt(position + Z_OFFSET));
+    }
+
+    @Override
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    @Override
+    public int getPlayerUuidId() {
+        return playerUuidId;
+    }
+
+    @Override
+    public int getDimensionId() {
+        return dimensionId;
+    }
+
+    @Override
+    public int getItemDeltaSize() {
+        return deltaCount;
+    }
+
+    @Override
+    public int getItemDeltaId(int index) {
+        return itemIds[index];
+    }
+
+    @Override
+    public int getItemDeltaCount(int index) {
+        return itemCounts[index];
+    }
+
+    private void parse() {
+        // Same layout as ChestAccessLog.readCompact; component references are only checked, toLog resolves them
+        readPosition = position + VARINTS_OFFSET;
+        playerId = dictionary.getSymbolId(readVarInt());
+        int playerUuidRef = readVarInt();
+        playerUuidId = playerUuidRef != 0 ? dictionary.getSymbolId(playerUuidRef - 1) : -1;
+        dimensionId = dictionary.getSymbolId(readVarInt());
+        deltaCount = readVarInt();
+        if (deltaCount < 0 || deltaCount > length) {
+            throw new IllegalStateException("Invalid item count " + deltaCount);
+        }
+        if (deltaCount > itemIds.length) {
+            itemIds = IntArrays.grow(itemIds, deltaCount);
+            itemCounts = IntArrays.grow(itemCounts, deltaCount);
+        }
+        for (int i = 0; i < deltaCount; i++) {
+            itemIds[i] = dictionary.getSymbolId(readVarInt());
+            int zigzag = readVarInt();
+            itemCounts[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+            int componentsRef = readVarInt();
+            if (componentsRef != 0 && !dictionary.hasComponents(componentsRef - 1)) {
+                throw new IllegalStateException("Unknown component data " + componentsRef);
+            }
+        }
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int end = position + length;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (readPosition >= end) {
+                throw new IllegalStateException("Record ends inside a VarInt");
+            }
+            byte b = buffer.get(readPosition++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("VarInt too long");
+    }
+
+    public ChestAccessLog toLog() {
+        // The only allocation on the mapped read path, done for matching records only
+        return ChestAccessLog.readCompact(buffer.slice(position, length), dictionary);
+    }
+}
@@ -0,0 +1,212 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+public class LogStats {
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+
+    // Counters updated with every record, so statistics never have to look at the records themselves; a ranking
+    // still visits every counter of its kind, its cost grows with the number of players, items or containers
+    private final Object2IntOpenHashMap<String> playerAccesses = new Object2IntOpenHashMap<>();
+    private final Object2LongOpenHashMap<String> itemsMoved = new Object2LongOpenHashMap<>(); // Items in plus items out
+    private final Map<String, Long2IntOpenHashMap> containerAccesses = new HashMap<>(); // Dimension -> BlockPos.asLong()
+    private final Long2IntOpenHashMap hourlyAccesses = new Long2IntOpenHashMap(); // Hours since epoch
+
+    public record Ranked(String name, long count) {
+    }
+
+    private record ContainerCount(String dimension, long packedPos, int count) {
+    }
+
+    public void add(ChestAccessLog log) {
+        playerAccesses.addTo(log.getPlayerName(), 1);
+        for (int i = 0; i < log.getItemDeltaSize(); i++) {
+            itemsMoved.addTo(SymbolTable.get(log.getItemDeltaId(i)), Math.abs(log.getItemDeltaCount(i)));
+        }
+        containerAccesses.computeIfAbsent(log.getDimension(), key -> new Long2IntOpenHashMap())
+                .addTo(log.getPosition().asLong(), 1);
+        hourlyAccesses.addTo(Math.floorDiv(log.getTimestamp(), MILLIS_PER_HOUR), 1);
+    }
+
+    public void add(LogStats other) {
+        merge(other, 1);
+    }
+
+    public void subtract(LogStats other) {
+        // Used when a day is dropped, counters that reach zero are removed so the maps do not keep growing
+        merge(other, -1);
+    }
+
+    private void merge(LogStats other, int sign) {
+        for (Object2IntMap.Entry<String> entry : other.playerAccesses.object2IntEntrySet()) {
+            if (playerAccesses.addTo(entry.getKey(), sign * entry.getIntValue()) + sign * entry.getIntValue() == 0) {
+                playerAccesses.removeInt(entry.getKey());
+            }
+        }
+        for (Object2LongMap.Entry<String> entry : other.itemsMoved.object2LongEntrySet()) {
+            if (itemsMoved.addTo(entry.getKey(), sign * entry.getLongValue()) + sign * entry.getLongValue() == 0) {
+                itemsMoved.removeLong(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Long2IntOpenHashMap> dimension : other.containerAccesses.entrySet()) {
+            Long2IntOpenHashMap containers = containerAccesses.computeIfAbsent(dimension.getKey(), key -> new Long2IntOpenHashMap());
+            mergeCounts(containers, dimension.getValue(), sign);
+            if (containers.isEmpty()) {
+                containerAccesses.remove(dimension.getKey());
+            }
+        }
+        mergeCounts(hourlyAccesses, other.hourlyAccesses, sign);
+    }
+
+    private static void mergeCounts(Long2IntOpenHashMap target, Long2IntOpenHashMap source, int sign) {
+        for (Long2IntMap.Entry entry : source.long2IntEntrySet()) {
+            if (target.addTo(entry.getLongKey(), sign * entry.getIntValue()) + sign * entry.getIntValue() == 0) {
+                target.remove(entry.getLongKey());
+            }
+        }
+    }
+
+    public void clear() {
+        playerAccesses.clear();
+        itemsMoved.clear();
+        containerAccesses.clear();
+        hourlyAccesses.clear();
+    }
+
+    public List<Ranked> getTopPlayers(int count) {
+        List<Ranked> candidates = new ArrayList<>(playerAccesses.size());
+        for (Object2IntMap.Entry<String> entry : playerAccesses.object2IntEntrySet()) {
+            candidates.add(new Ranked(entry.getKey(), entry.getIntValue()));
+        }
+        return top(candidates, Ranked::count, count);
+    }
+
+    public List<Ranked> getTopItems(int count) {
+        List<Ranked> candidates = new ArrayList<>(itemsMoved.size());
+        for (Object2LongMap.Entry<String> entry : itemsMoved.object2LongEntrySet()) {
+            candidates.add(new Ranked(entry.getKey(), entry.getLongValue()));
+        }
+        return top(candidates, Ranked::count, count);
+    }
+
+    public List<Ranked> getTopContainers(int count) {
+        // Ranked by position, only the containers that make it are turned into text
+        List<ContainerCount> candidates = new ArrayList<>();
+        for (Map.Entry<String, Long2IntOpenHashMap> dimension : containerAccesses.entrySet()) {
+            for (Long2IntMap.Entry entry : dimension.getValue().long2IntEntrySet()) {
+                candidates.add(new ContainerCount(dimension.getKey(), entry.getLongKey(), entry.getIntValue()));
+            }
+        }
+
+        List<Ranked> result = new ArrayList<>(count);
+        for (ContainerCount container : top(candidates, ContainerCount::count, count)) {
+            BlockPos pos = BlockPos.fromLong(container.packedPos());
+            result.add(new Ranked(pos.getX() + ", " + pos.getY() + ", " + pos.getZ() + " (" + container.dimension() + ")",
+                    container.count()));
+        }
+        return result;
+    }
+
+    public int[] getHourlyAccesses(long fromTimestamp, int hours) {
+        long firstHour = Math.floorDiv(fromTimestamp, MILLIS_PER_HOUR);
+        int[] accesses = new int[hours];
+        for (int i = 0; i < hours; i++) {
+            accesses[i] = hourlyAccesses.get(firstHour + i);
+        }
+        return accesses;
+    }
+
+    private static <T> List<T> top(List<T> candidates, ToLongFunction<T> counter, int count) {
+        // One pass over the candidates, the heap keeps only the current top entries instead of sorting them all
+        Comparator<T> byCount = Comparator.comparingLong(counter);
+        PriorityQueue<T> heap = new PriorityQueue<>(byCount);
+        for (T candidate : candidates) {
+            heap.add(candidate);
+            if (heap.size() > count) {
+                heap.poll();
+            }
+        }
+
+        List<T> result = new ArrayList<>(heap);
+        result.sort(byCount.reversed());
+        return result;
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(playerAccesses.size());
+        for (Object2IntMap.Entry<String> entry : playerAccesses.object2IntEntrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeInt(entry.getIntValue());
+        }
+
+        output.writeInt(itemsMoved.size());
+        for (Object2LongMap.Entry<String> entry : itemsMoved.object2LongEntrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeLong(entry.getLongValue());
+        }
+
+        output.writeInt(containerAccesses.size());
+        for (Map.Entry<String, Long2IntOpenHashMap> dimension : containerAccesses.entrySet()) {
+            output.writeUTF(dimension.getKey());
+            writeCounts(output, dimension.getValue());
+        }
+
+        writeCounts(output, hourlyAccesses);
+    }
+
+    public static LogStats read(DataInput input) throws IOException {
+        LogStats stats = new LogStats();
+        int playerCount = input.readInt();
+        for (int i = 0; i < playerCount; i++) {
+            stats.playerAccesses.put(input.readUTF(), input.readInt());
+        }
+
+        int itemCount = input.readInt();
+        for (int i = 0; i < itemCount; i++) {
+            stats.itemsMoved.put(input.readUTF(), input.readLong());
+        }
+
+        int dimensionCount = input.readInt();
+        for (int i = 0; i < dimensionCount; i++) {
+            String dimension = input.readUTF();
+            Long2IntOpenHashMap containers = new Long2IntOpenHashMap();
+            readCounts(input, containers);
+            stats.containerAccesses.put(dimension, containers);
+        }
+
+        readCounts(input, stats.hourlyAccesses);
+        return stats;
+    }
+
+    private static void writeCounts(DataOutput output, Long2IntOpenHashMap counts) throws IOException {
+        output.writeInt(counts.size());
+        for (Long2IntMap.Entry entry : counts.long2IntEntrySet()) {
+            output.writeLong(entry.getLongKey());
+            output.writeInt(entry.getIntValue());
+        }
+    }
+
+    private static void readCounts(DataInput input, Long2IntOpenHashMap counts) throws IOException {
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            counts.put(input.readLong(), input.readInt());
+        }
+    }
+}
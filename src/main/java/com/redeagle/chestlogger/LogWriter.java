@@ -0,0 +1,114 @@
+package com.redeagle.chestlogger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class LogWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger("ChestLogger");
+    private static final int QUEUE_CAPACITY = 64; // Pending batches before the tick thread has to wait
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final LogJournal journal;
+    private final BlockingQueue<Task> queue;
+    private final Thread thread;
+
+    @FunctionalInterface
+    public interface JournalTask {
+        void run(LogJournal journal) throws IOException;
+    }
+
+    private record Task(JournalTask action, CompletableFuture<Void> done) {
+        static final Task SHUTDOWN = new Task(null, null);
+    }
+
+    public LogWriter(LogJournal journal) {
+        this.journal = journal;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.thread = Thread.ofPlatform()
+                .name("ChestLogger-Writer")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    public void submit(List<ChestAccessLog> batch) {
+        // The batch is handed over as an immutable copy, the tick thread keeps no reference to it
+        List<ChestAccessLog> immutableBatch = List.copyOf(batch);
+        enqueue(new Task(journal -> journal.append(immutableBatch), null));
+    }
+
+    public CompletableFuture<Void> submit(JournalTask action) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        enqueue(new Task(action, done));
+        return done;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public void awaitIdle() {
+        // Everything queued before this barrier has been written once it completes
+        submit(journal -> {}).join();
+    }
+
+    public void shutdown() {
+        enqueue(Task.SHUTDOWN);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+            if (thread.isAlive()) {
+                LOGGER.warn("Log writer did not finish within {} seconds, {} batches still queued",
+                        SHUTDOWN_TIMEOUT_SECONDS, queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Task task) {
+        if (queue.offer(task)) {
+            return;
+        }
+
+        // Only happens if the disk falls far behind - block instead of dropping logs
+        LOGGER.warn("Log writer queue is full ({} batches), waiting for the disk to catch up", QUEUE_CAPACITY);
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while queueing chest logs, batch was not saved");
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                LOGGER.warn("Log writer interrupted, {} batches left unsaved", queue.size());
+                return;
+            }
+
+            if (task == Task.SHUTDOWN) {
+                return;
+            }
+
+            try {
+                task.action().run(journal);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Failed to write chest logs", e);
+            } finally {
+                if (task.done() != null) {
+                    task.done().complete(null);
+                }
+            }
+        }
+    }
+}
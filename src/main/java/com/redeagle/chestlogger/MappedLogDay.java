@@ -0,0 +1,139 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class MappedLogDay {
+    private static final int BLOCK_RECORDS = LogIndex.TIMESTAMP_BLOCK_SIZE; // Same blocks as the timestamp index
+
+    private final List<ByteBuffer> segments; // Read-only mappings of the day's segment files, in part order
+    // Filled by the walks as they pass each segment's symbol and component frames, so only the first walk
+    // decodes them; a day is walked by one thread at a time
+    private final LogDictionary[] dictionaries;
+    private final int[] dictionaryEnds; // Position after the last frame already in each dictionary
+    // Where the first record of every block starts, also filled by the walks: later scans jump to the block of
+    // their first offset, every frame before it is already in the dictionaries
+    private final IntArrayList blockSegments = new IntArrayList();
+    private final IntArrayList blockPositions = new IntArrayList();
+
+    // The walk position: the next frame to read and the offset the next record gets
+    private int segmentIndex = 0;
+    private int position = LogJournal.SEGMENT_HEADER_BYTES;
+    private int nextOffset = 0;
+    private int recordPosition; // Payload of the record the walk stopped at, after the frame type
+    private int recordLength;
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        boolean visit(int offset, LogRecordView record); // Return false to stop the scan
+    }
+
+    public MappedLogDay(List<ByteBuffer> segments) {
+        this.segments = segments;
+        this.dictionaries = new LogDictionary[segments.size()];
+        this.dictionaryEnds = new int[segments.size()];
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new LogDictionary();
+        }
+    }
+
+    public void scan(int fromOffset, RecordVisitor visitor) {
+        LogRecordView view = new LogRecordView();
+        seek(fromOffset);
+        while (nextRecord()) {
+            int offset = nextOffset - 1;
+            if (offset >= fromOffset && !visit(offset, view, visitor)) {
+                return;
+            }
+        }
+    }
+
+    public void scan(IntList offsets, RecordVisitor visitor) {
+        // Offsets must be ascending; records in between are skipped by their length prefix only
+        LogRecordView view = new LogRecordView();
+        for (int i = 0; i < offsets.size(); i++) {
+            int target = offsets.getInt(i);
+            seek(target);
+            while (nextOffset <= target) {
+                if (!nextRecord()) {
+                    return; // The day ends before the offset
+                }
+            }
+            if (nextOffset - 1 == target && !visit(target, view, visitor)) {
+                return;
+            }
+        }
+    }
+
+    private boolean visit(int offset, LogRecordView view, RecordVisitor visitor) {
+        // Only records a scan asks for are decoded; one that cannot be is left out but keeps its offset, the
+        // journal stops reading a segment at such a record, see LogJournal.readSegment
+        return !view.reset(segments.get(segmentIndex), recordPosition, recordLength, dictionaries[segmentIndex])
+                || visitor.visit(offset, view);
+    }
+
+    private void seek(int offset) {
+        // Jumps to the block of offset when that is ahead of the walk, or when the walk already went past offset
+        int block = Math.min(offset / BLOCK_RECORDS, blockPositions.size() - 1);
+        int blockOffset = block * BLOCK_RECORDS;
+        if (block >= 0 && (blockOffset >= nextOffset || offset < nextOffset)) {
+            segmentIndex = blockSegments.getInt(block);
+            position = blockPositions.getInt(block);
+            nextOffset = blockOffset;
+        } else if (offset < nextOffset) {
+            segmentIndex = 0;
+            position = LogJournal.SEGMENT_HEADER_BYTES;
+            nextOffset = 0;
+        }
+    }
+
+    private boolean nextRecord() {
+        // Moves past the next record frame, false at the end of the day
+        while (segmentIndex < segments.size()) {
+            ByteBuffer segment = segments.get(segmentIndex);
+            int limit = segment.limit();
+            int length = position + 4 <= limit ? segment.getInt(position) : 0;
+            if (length <= 0 || length > LogJournal.MAX_RECORD_BYTES || position + 4 + length > limit) {
+                // End of the segment, or broken framing the journal stops at as well
+                segmentIndex++;
+                position = LogJournal.SEGMENT_HEADER_BYTES;
+                continue;
+            }
+
+            int frame = position;
+            int payload = position + 4;
+            position = payload + length;
+            byte type = segment.get(payload);
+            if (type == LogJournal.FRAME_SYMBOL || type == LogJournal.FRAME_COMPONENTS) {
+                // Not records, they only extend the dictionary for the records after them; frames an earlier
+                // walk already added are just skipped
+                if (frame >= dictionaryEnds[segmentIndex]) {
+                    byte[] bytes = new byte[length - 1];
+                    segment.get(payload + 1, bytes);
+                    String value = new String(bytes, StandardCharsets.UTF_8);
+                    if (type == LogJournal.FRAME_SYMBOL) {
+                        dictionaries[segmentIndex].add(value);
+                    } else {
+                        dictionaries[segmentIndex].addComponents(value);
+                    }
+                    dictionaryEnds[segmentIndex] = position;
+                }
+                continue;
+            }
+
+            if (nextOffset % BLOCK_RECORDS == 0 && nextOffset / BLOCK_RECORDS == blockPositions.size()) {
+                blockSegments.add(segmentIndex);
+                blockPositions.add(frame);
+            }
+            recordPosition = payload + 1;
+            recordLength = length - 1;
+            nextOffset++;
+            return true;
+        }
+        return false;
+    }
+}
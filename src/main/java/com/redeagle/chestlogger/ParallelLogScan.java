@@ -0,0 +1,204 @@
+package com.redeagle.chestlogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class ParallelLogScan {
+    private static final int MAX_THREADS = 4; // Capped so a long scan never competes with the server for every core
+    private static final long IDLE_SECONDS = 60; // Workers exit when no scan ran for a while
+
+    private final ForkJoinPool pool;
+
+    // One day of records, gathered on the query thread so the workers never touch a partition; records before
+    // firstLogOffset are read from mapped, the rest from logs (either may be null when it holds nothing)
+    public record Source(LogIndex index, MappedLogDay mapped, List<ChestAccessLog> logs, int firstLogOffset) {
+
+        public void scan(long from, long to, Predicate<LogRecord> filter, BooleanSupplier cancelled,
+                         Consumer<ChestAccessLog> result) {
+            // Matches are passed on in the order they were logged
+            int firstOffset = index.getFirstOffsetAtOrAfter(from);
+            if (firstOffset < firstLogOffset) {
+                boolean[] stopped = {false};
+                mapped.scan(firstOffset, (offset, record) -> {
+                    if (offset >= firstLogOffset) {
+                        return false;
+                    }
+                    if (cancelled.getAsBoolean() || index.isBlockAfter(offset, to)) {
+                        stopped[0] = true;
+                        return false;
+                    }
+                    long timestamp = record.getTimestamp();
+                    if (timestamp >= from && timestamp <= to && filter.test(record)) {
+                        result.accept(record.toLog());
+                    }
+                    return true;
+                });
+                if (stopped[0]) {
+                    return;
+                }
+            }
+            if (logs == null) {
+                return;
+            }
+
+            for (int offset = Math.max(firstOffset, firstLogOffset); offset < firstLogOffset + logs.size(); offset++) {
+                if (cancelled.getAsBoolean() || index.isBlockAfter(offset, to)) {
+                    break;
+                }
+
+                ChestAccessLog log = logs.get(offset - firstLogOffset);
+                if (log.getTimestamp() >= from && log.getTimestamp() <= to && filter.test(log)) {
+                    result.accept(log);
+                }
+            }
+        }
+    }
+
+    public ParallelLogScan() {
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() / 2));
+        // No compensation threads beyond the cap, a blocked join just waits
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ChestLogger-Scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false, 0, threads, 1, pool -> true, IDLE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public List<ChestAccessLog> scan(List<Source> sources, long from, long to, Predicate<LogRecord> filter, int limit) {
+        // Sources must be in day order; returns the newest matches up to limit, oldest first
+        Scan scan = new Scan(sources, from, to, filter, limit, pool);
+        pool.invoke(scan.new Task(0, sources.size()));
+        return scan.merge();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static class Scan {
+        private final List<Source> sources;
+        private final long from;
+        private final long to;
+        private final Predicate<LogRecord> filter;
+        private final int limit;
+        private final ForkJoinPool pool;
+        private final List<NewestLogs> results; // Per source, null until its scan finished
+        // Sources before this one can no longer make it into the newest results and stop early
+        private volatile int firstNeeded = 0;
+
+        Scan(List<Source> sources, long from, long to, Predicate<LogRecord> filter, int limit, ForkJoinPool pool) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.limit = limit;
+            this.pool = pool;
+            this.results = new ArrayList<>(Collections.nCopies(sources.size(), null));
+        }
+
+        private class Task extends RecursiveAction {
+            private final int first;
+            private final int end;
+
+            Task(int first, int end) {
+                this.first = first;
+                this.end = end;
+            }
+
+            @Override
+            protected void compute() {
+                if (end - first > 1) {
+                    // The newer half runs here and the older half is left to be stolen, so the newest days
+                    // tend to finish first and cancel the rest
+                    int mid = (first + end) >>> 1;
+                    invokeAll(new Task(mid, end), new Task(first, mid));
+                    return;
+                }
+                if (first >= end || first < firstNeeded) {
+                    return;
+                }
+
+                Source source = sources.get(first);
+                NewestLogs found = new NewestLogs(Math.min(limit, source.index().getRecordCount()));
+                source.scan(from, to, filter, () -> first < firstNeeded || pool.isShutdown(), log -> {
+                    found.add(log);
+                    if (found.size() >= limit && firstNeeded < first) {
+                        raiseFirstNeeded(first); // This day alone fills the results, older days are not needed
+                    }
+                });
+                finish(first, found);
+            }
+        }
+
+        private synchronized void raiseFirstNeeded(int source) {
+            if (source > firstNeeded) {
+                firstNeeded = source;
+            }
+        }
+
+        private synchronized void finish(int source, NewestLogs found) {
+            results.set(source, found);
+            int newer = 0;
+            for (int i = results.size() - 1; i >= firstNeeded && results.get(i) != null; i--) {
+                newer += results.get(i).size();
+                if (newer >= limit) {
+                    firstNeeded = i;
+                    return;
+                }
+            }
+        }
+
+        private List<ChestAccessLog> merge() {
+            // Days do not overlap in time, so the days only have to be put one after another
+            List<ChestAccessLog> merged = new ArrayList<>();
+            for (int i = firstNeeded; i < results.size(); i++) {
+                if (results.get(i) != null) { // Cancelled by shutdown
+                    results.get(i).addTo(merged);
+                }
+            }
+            return merged.size() > limit ? new ArrayList<>(merged.subList(merged.size() - limit, merged.size())) : merged;
+        }
+    }
+
+    private static class NewestLogs {
+        // Ring of the newest matches of a day; the scan passes them in time order, so the oldest is overwritten
+        private final ChestAccessLog[] logs;
+        private int next = 0;
+        private int size = 0;
+
+        NewestLogs(int capacity) {
+            this.logs = new ChestAccessLog[capacity];
+        }
+
+        void add(ChestAccessLog log) {
+            if (logs.length == 0) {
+                return;
+            }
+            logs[next] = log;
+            next = (next + 1) % logs.length;
+            if (size < logs.length) {
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        void addTo(List<ChestAccessLog> result) {
+            int oldest = size < logs.length ? 0 : next;
+            for (int i = 0; i < size; i++) {
+                result.add(logs[(oldest + i) % logs.length]);
+            }
+        }
+    }
+}
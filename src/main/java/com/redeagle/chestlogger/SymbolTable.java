@@ -0,0 +1,38 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Arrays;
+
+public class SymbolTable {
+    // Player names and UUIDs, dimensions and item ids shared by every log record in memory; ids are only valid
+    // for the current server run, on disk each segment has its own dictionary (see LogDictionary)
+    private static final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+    private static volatile String[] symbols = new String[256];
+    private static int size = 0;
+
+    static {
+        ids.defaultReturnValue(-1);
+    }
+
+    public static synchronized int intern(String symbol) {
+        int id = ids.getInt(symbol);
+        if (id >= 0) {
+            return id;
+        }
+
+        id = size++;
+        String[] current = symbols;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = symbol;
+        symbols = current; // Publishes the new entry to lock-free readers in get
+        ids.put(symbol, id);
+        return id;
+    }
+
+    public static String get(int id) {
+        return symbols[id];
+    }
+}
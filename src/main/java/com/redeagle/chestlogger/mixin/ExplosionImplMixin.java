@@ -0,0 +1,35 @@
+package com.redeagle.chestlogger.mixin;
+
+import com.redeagle.chestlogger.ChestLockManager;
+import com.redeagle.chestlogger.Chestlogger;
+import com.redeagle.chestlogger.Config;
+import net.minecraft.entity.mob.MobEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.explosion.Explosion;
+import net.minecraft.world.explosion.ExplosionImpl;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+
+@Mixin(ExplosionImpl.class)
+public abstract class ExplosionImplMixin {
+    @Inject(method = "getBlocksToDestroy", at = @At("RETURN"))
+    private void filterLockedContainers(CallbackInfoReturnable<List<BlockPos>> cir) {
+        ChestLockManager lockManager = Chestlogger.getLockManager();
+        if (lockManager == null) {
+            return;
+        }
+
+        // Creepers, withers and ghast fireballs count as mobs, everything else (TNT, beds, anchors, crystals) as TNT
+        Explosion explosion = (Explosion) (Object) this;
+        boolean causedByMob = explosion.getEntity() instanceof MobEntity || explosion.getCausingEntity() instanceof MobEntity;
+        if (causedByMob ? !Config.lockProtectFromMobs : !Config.lockProtectFromTNT) {
+            return;
+        }
+
+        lockManager.removeLockedPositions(explosion.getWorld().getRegistryKey(), cir.getReturnValue());
+    }
+}
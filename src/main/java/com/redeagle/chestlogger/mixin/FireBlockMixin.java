@@ -0,0 +1,29 @@
+package com.redeagle.chestlogger.mixin;
+
+import com.redeagle.chestlogger.ChestLockManager;
+import com.redeagle.chestlogger.Chestlogger;
+import com.redeagle.chestlogger.Config;
+import net.minecraft.block.FireBlock;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(FireBlock.class)
+public abstract class FireBlockMixin {
+    @Inject(method = "trySpreadingFire", at = @At("HEAD"), cancellable = true)
+    private void protectLockedContainers(World world, BlockPos pos, int spreadFactor, Random random, int currentAge, CallbackInfo ci) {
+        // Fire burns a block away (or replaces it with fire) only through here
+        if (!Config.lockProtectFromFire) {
+            return;
+        }
+
+        ChestLockManager lockManager = Chestlogger.getLockManager();
+        if (lockManager != null && lockManager.isLocked(pos, world.getRegistryKey())) {
+            ci.cancel();
+        }
+    }
+}
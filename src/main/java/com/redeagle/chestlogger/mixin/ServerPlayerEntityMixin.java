@@ -24,15 +24,12 @@ public abstract class ServerPlayerEntityMixin {
     @Unique
     private ScreenHandler chestLogger$lastScreenHandler;
 
-    @Unique
-    private int chestLogger$tickCounter = 0;
-
     @Inject(method = "openHandledScreen", at = @At("TAIL"))
     private void onOpenHandledScreen(net.minecraft.screen.NamedScreenHandlerFactory factory, CallbackInfoReturnable<?> cir) {
         ServerPlayerEntity player = (ServerPlayerEntity) (Object) this;
 
-        // Try to get the position from the factory if it's a block entity
-        if (factory instanceof BlockEntity blockEntity) {
+        // Try to get the position from the factory if it's a block entity (and the screen actually opened)
+        if (factory instanceof BlockEntity blockEntity && player.currentScreenHandler != player.playerScreenHandler) {
             chestLogger$lastOpenedContainerPos = blockEntity.getPos();
             chestLogger$lastScreenHandler = player.currentScreenHandler;
 
@@ -43,27 +40,19 @@ public abstract class ServerPlayerEntityMixin {
         }
     }
 
-    @Inject(method = "tick", at = @At("HEAD"))
-    private void onTick(CallbackInfo ci) {
-        // Only check every 5 ticks (4 times per second) for performance
-        if (chestLogger$lastOpenedContainerPos == null) {
-            return; // Early exit if no container is open
-        }
-
-        chestLogger$tickCounter++;
-        if (chestLogger$tickCounter < 5) {
+    @Inject(method = "onHandledScreenClosed", at = @At("HEAD"))
+    private void onHandledScreenClosed(CallbackInfo ci) {
+        // Runs for every close path (client closing, another screen opening, death, disconnect),
+        // while currentScreenHandler still is the screen that is being closed
+        if (chestLogger$lastScreenHandler == null) {
             return;
         }
-        chestLogger$tickCounter = 0;
 
         ServerPlayerEntity player = (ServerPlayerEntity) (Object) this;
-
-        // Check if screen handler was closed (player is back to inventory)
-        if (chestLogger$lastScreenHandler != null &&
-            player.currentScreenHandler != chestLogger$lastScreenHandler) {
+        if (player.currentScreenHandler == chestLogger$lastScreenHandler) {
             ChestEventHandler.onContainerClose(player, chestLogger$lastScreenHandler);
-            chestLogger$lastOpenedContainerPos = null;
-            chestLogger$lastScreenHandler = null;
         }
+        chestLogger$lastOpenedContainerPos = null;
+        chestLogger$lastScreenHandler = null;
     }
 }
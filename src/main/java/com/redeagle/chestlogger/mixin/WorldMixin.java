@@ -0,0 +1,29 @@
+package com.redeagle.chestlogger.mixin;
+
+import com.redeagle.chestlogger.ChestLockManager;
+import com.redeagle.chestlogger.Chestlogger;
+import com.redeagle.chestlogger.Config;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.mob.MobEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(World.class)
+public abstract class WorldMixin {
+    @Inject(method = "breakBlock(Lnet/minecraft/util/math/BlockPos;ZLnet/minecraft/entity/Entity;I)Z", at = @At("HEAD"), cancellable = true)
+    private void protectLockedContainers(BlockPos pos, boolean drop, Entity breakingEntity, int maxUpdateDepth, CallbackInfoReturnable<Boolean> cir) {
+        // Mob griefing that breaks blocks directly (withers, ravagers, modded mobs) passes the mob as breaker
+        if (!(breakingEntity instanceof MobEntity) || !Config.lockProtectFromMobs) {
+            return;
+        }
+
+        ChestLockManager lockManager = Chestlogger.getLockManager();
+        if (lockManager != null && lockManager.isLocked(pos, ((World) (Object) this).getRegistryKey())) {
+            cir.setReturnValue(false);
+        }
+    }
+}
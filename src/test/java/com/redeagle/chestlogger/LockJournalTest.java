@@ -0,0 +1,156 @@
+package com.redeagle.chestlogger;
+
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LockJournalTest {
+    private static final String OVERWORLD = "minecraft:overworld";
+    private static final UUID STEVE = UUID.fromString("8667ba71-b85a-4004-af54-457a9734eed7");
+    private static final UUID ALEX = UUID.fromString("ec561538-f3fd-461d-aff5-086b22154bce");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void replaysJournalLeftByACrash() throws IOException {
+        LockJournal journal = new LockJournal(directory);
+        journal.recover(getLegacyFile());
+        journal.recordLock(createLock(STEVE, 0, 0));
+        journal.recordLock(createLock(STEVE, 1, 0));
+        journal.recordLock(createLock(ALEX, 600, 0)); // Another region
+        journal.recordUnlock(OVERWORLD, new BlockPos(1, 64, 0));
+        journal.flush();
+        readRegion(journal, 0, 0); // Runs behind the journal write
+
+        LockOwnerIndex owners = new LockJournal(directory).recover(getLegacyFile());
+        assertEquals(2, owners.getTotalLockCount());
+        assertEquals(1, owners.getLockCount(STEVE));
+        assertTrue(owners.hasLocks(OVERWORLD, LockRegion.keyOf(new BlockPos(600, 64, 0))));
+        assertFalse(Files.exists(getJournalFile()));
+
+        LockJournal reopened = new LockJournal(directory);
+        assertEquals(List.of(new BlockPos(0, 64, 0)), positions(readRegion(reopened, 0, 0)));
+        assertEquals(List.of(new BlockPos(600, 64, 0)), positions(readRegion(reopened, 600, 0)));
+    }
+
+    @Test
+    public void ignoresTornEntryAtTheEnd() throws IOException {
+        LockJournal journal = new LockJournal(directory);
+        journal.recover(getLegacyFile());
+        journal.recordLock(createLock(STEVE, 0, 0));
+        journal.flush();
+        readRegion(journal, 0, 0);
+        Files.write(getJournalFile(), new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        LockOwnerIndex owners = new LockJournal(directory).recover(getLegacyFile());
+        assertEquals(1, owners.getTotalLockCount());
+        assertEquals(List.of(new BlockPos(0, 64, 0)), positions(readRegion(new LockJournal(directory), 0, 0)));
+    }
+
+    @Test
+    public void stopsAtInvalidEntryLength() throws IOException {
+        LockJournal journal = new LockJournal(directory);
+        journal.recover(getLegacyFile());
+        journal.recordLock(createLock(STEVE, 0, 0));
+        journal.flush();
+        readRegion(journal, 0, 0);
+        Files.write(getJournalFile(), new byte[]{(byte) 0xFF, 0, 0, 0}, StandardOpenOption.APPEND);
+        journal.recordLock(createLock(STEVE, 2, 0));
+        journal.flush();
+        readRegion(journal, 0, 0);
+
+        LockOwnerIndex owners = new LockJournal(directory).recover(getLegacyFile());
+        assertEquals(1, owners.getTotalLockCount());
+    }
+
+    @Test
+    public void compactionKeepsOwnersAndDropsJournal() throws IOException {
+        LockJournal journal = new LockJournal(directory);
+        LockOwnerIndex owners = journal.recover(getLegacyFile());
+        List<ChestLock> locks = new ArrayList<>();
+        for (int x = 0; x < 3; x++) {
+            ChestLock lock = createLock(STEVE, x, 0);
+            locks.add(lock);
+            owners.add(lock);
+            journal.recordLock(lock);
+        }
+        journal.writeRegion(OVERWORLD, LockRegion.keyOf(new BlockPos(0, 64, 0)), locks);
+        journal.close(owners.toBytes());
+
+        assertEquals(0, journal.getEntriesSinceSnapshot());
+        assertFalse(Files.exists(getJournalFile()));
+        LockOwnerIndex recovered = new LockJournal(directory).recover(getLegacyFile());
+        assertEquals(3, recovered.getLockCount(STEVE));
+        assertEquals(positions(locks), positions(readRegion(new LockJournal(directory), 0, 0)));
+    }
+
+    @Test
+    public void rebuildsDamagedOwnerIndex() throws IOException {
+        LockJournal journal = new LockJournal(directory);
+        LockOwnerIndex owners = journal.recover(getLegacyFile());
+        ChestLock lock = createLock(ALEX, 0, 0);
+        owners.add(lock);
+        journal.recordLock(lock);
+        journal.writeRegion(OVERWORLD, LockRegion.keyOf(lock.getPosition()), List.of(lock));
+        journal.close(owners.toBytes());
+
+        Path ownerIndexFile = directory.resolve("owners.dat");
+        byte[] data = Files.readAllBytes(ownerIndexFile);
+        Files.write(ownerIndexFile, new byte[]{data[0], data[1]});
+
+        LockOwnerIndex rebuilt = new LockJournal(directory).recover(getLegacyFile());
+        assertEquals(1, rebuilt.getLockCount(ALEX));
+    }
+
+    @Test
+    public void readsQueuedRegionWrites() throws IOException {
+        LockJournal journal = new LockJournal(directory);
+        journal.recover(getLegacyFile());
+        ChestLock lock = createLock(STEVE, 5, 5);
+        journal.writeRegion(OVERWORLD, LockRegion.keyOf(lock.getPosition()), List.of(lock));
+
+        // Whether or not the file is written yet, a read never sees the region without the lock
+        assertEquals(List.of(lock.getPosition()), positions(readRegion(journal, 5, 5)));
+
+        journal.writeRegion(OVERWORLD, LockRegion.keyOf(lock.getPosition()), List.of());
+        assertTrue(readRegion(journal, 5, 5).isEmpty());
+    }
+
+    private Path getLegacyFile() {
+        return directory.resolve("chest_locks.dat");
+    }
+
+    private Path getJournalFile() {
+        return directory.resolve("locks.journal");
+    }
+
+    private static ChestLock createLock(UUID owner, int x, int z) {
+        return new ChestLock(owner, owner.equals(STEVE) ? "Steve" : "Alex", new BlockPos(x, 64, z), OVERWORLD, 1000L + x);
+    }
+
+    private static List<ChestLock> readRegion(LockJournal journal, int x, int z) {
+        return journal.readRegionAsync(OVERWORLD, LockRegion.keyOf(new BlockPos(x, 64, z))).join();
+    }
+
+    private static List<BlockPos> positions(List<ChestLock> locks) {
+        List<BlockPos> positions = new ArrayList<>();
+        for (ChestLock lock : locks) {
+            positions.add(lock.getPosition());
+        }
+        positions.sort((a, b) -> Long.compare(a.asLong(), b.asLong()));
+        return positions;
+    }
+}
@@ -0,0 +1,202 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogIndexTest {
+    private static final long DAY = 20000;
+    private static final String STEVE_UUID = "8667ba71-b85a-4004-af54-457a9734eed7";
+    private static final String ALEX_UUID = "ec561538-f3fd-461d-aff5-086b22154bce";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void keepsPostingsThroughWriteAndRead() throws IOException {
+        LogIndex index = createIndex(createLogs());
+        LogIndex read = LogIndex.read(input(write(index)));
+
+        assertEquals(index.getRecordCount(), read.getRecordCount());
+        assertEquals(index.getPlayerPostings(STEVE_UUID, "Steve"), read.getPlayerPostings(STEVE_UUID, "Steve"));
+        assertEquals(index.getItemPostings("minecraft:stone", true), read.getItemPostings("minecraft:stone", true));
+        assertEquals(index.getItemPostings("minecraft:dirt"), read.getItemPostings("minecraft:dirt"));
+        assertEquals(index.getPositionPostings(new BlockPos(3, 64, 0), "minecraft:overworld"),
+                read.getPositionPostings(new BlockPos(3, 64, 0), "minecraft:overworld"));
+        assertEquals(index.getFirstOffsetAtOrAfter(time(150)), read.getFirstOffsetAtOrAfter(time(150)));
+        assertEquals(index.getStats().getTopPlayers(3), read.getStats().getTopPlayers(3));
+    }
+
+    @Test
+    public void findsPostingsByKey() {
+        LogIndex index = createIndex(createLogs());
+
+        assertEquals(100, index.getItemPostings("minecraft:stone", true).size());
+        assertEquals(100, index.getItemPostings("minecraft:dirt", false).size());
+        assertEquals(IntArrayList.of(3, 13, 23), index.getPositionPostings(new BlockPos(3, 64, 0), "minecraft:overworld").subList(0, 3));
+        assertTrue(index.getPositionPostings(new BlockPos(3, 64, 0), "minecraft:the_nether").isEmpty());
+
+        IntArrayList inBox = new IntArrayList();
+        index.forEachContainerInBox("minecraft:overworld", new BlockPos(0, 0, 0), new BlockPos(1, 100, 0),
+                (packedPos, postings) -> inBox.addAll(postings));
+        assertEquals(40, inBox.size());
+
+        // Records are one second apart, every timestamp block covers 64 of them
+        assertEquals(128, index.getFirstOffsetAtOrAfter(time(150)));
+        assertEquals(200, index.getFirstOffsetAtOrAfter(time(1000)));
+    }
+
+    @Test
+    public void keysPlayersByUuid() {
+        List<ChestAccessLog> logs = new ArrayList<>();
+        logs.add(new ChestAccessLog("Steve", new BlockPos(0, 64, 0), "minecraft:overworld", time(0), List.of(), List.of()));
+        logs.add(createLog("Steve", STEVE_UUID, 1));
+        logs.add(createLog("Herobrine", STEVE_UUID, 2)); // Renamed
+        logs.add(createLog("Steve", ALEX_UUID, 3)); // The old name taken by someone else
+        LogIndex index = createIndex(logs);
+
+        assertEquals(IntArrayList.of(1, 2), index.getPlayerPostings(STEVE_UUID, "Herobrine"));
+        assertEquals(IntArrayList.of(0, 3), index.getPlayerPostings(ALEX_UUID, "STEVE"));
+        assertEquals(IntArrayList.of(0), index.getPlayerPostings(null, "steve"));
+        assertEquals(ALEX_UUID, index.getPlayerUuids().get("steve"));
+        assertEquals(STEVE_UUID, index.getPlayerUuids().get("herobrine"));
+    }
+
+    @Test
+    public void readsSummaryWithoutPostings() throws IOException {
+        LogIndex index = createIndex(createLogs());
+        LogStats totals = new LogStats();
+        LogIndex.Summary summary = LogIndex.readSummary(input(write(index)), totals);
+
+        assertEquals(200, summary.recordCount());
+        assertEquals(time(0), summary.minTimestamp());
+        assertEquals(time(199), summary.maxTimestamp());
+        assertEquals(STEVE_UUID, summary.playerUuids().get("steve"));
+        assertTrue(summary.filter().mightContainPlayer(STEVE_UUID));
+        assertTrue(summary.filter().mightContainItem("minecraft:stone"));
+        assertFalse(summary.filter().mightContainItem("minecraft:bedrock"));
+        assertEquals(index.getStats().getTopItems(2), totals.getTopItems(2));
+    }
+
+    @Test
+    public void readsStatsOnlyForTheSameRecordCount() throws IOException {
+        byte[] data = write(createIndex(createLogs()));
+
+        assertNotNull(LogIndex.readStats(input(data), 200));
+        assertNull(LogIndex.readStats(input(data), 201));
+    }
+
+    @Test
+    public void rejectsForeignOrTruncatedData() throws IOException {
+        byte[] data = write(createIndex(createLogs()));
+
+        byte[] otherMagic = data.clone();
+        otherMagic[0] ^= 1;
+        assertThrows(IOException.class, () -> LogIndex.read(input(otherMagic)));
+        byte[] otherVersion = data.clone();
+        otherVersion[7] ^= 1;
+        assertThrows(IOException.class, () -> LogIndex.read(input(otherVersion)));
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+        assertThrows(IOException.class, () -> LogIndex.read(input(truncated)));
+    }
+
+    @Test
+    public void indexFileGoesStaleWhenItsDayChanges() throws IOException {
+        List<ChestAccessLog> logs = createLogs();
+        LogJournal journal = new LogJournal(directory);
+        journal.append(logs.subList(0, 100));
+        journal.writeIndex(DAY, write(createIndex(logs.subList(0, 100))));
+
+        LogIndex read = new LogJournal(directory).readIndex(DAY);
+        assertNotNull(read);
+        assertEquals(100, read.getRecordCount());
+
+        journal.append(logs.subList(100, 200));
+        assertNull(new LogJournal(directory).readIndex(DAY));
+        assertNull(new LogJournal(directory).readIndexSummary(DAY, null));
+        // The rollups are still there for a caller that knows how many records they describe
+        assertNotNull(journal.readIndexStats(DAY, 100));
+    }
+
+    @Test
+    public void ignoresDamagedIndexFile() throws IOException {
+        List<ChestAccessLog> logs = createLogs();
+        LogJournal journal = new LogJournal(directory);
+        journal.append(logs);
+        journal.writeIndex(DAY, write(createIndex(logs)));
+
+        Path indexFile = directory.resolve(LocalDate.ofEpochDay(DAY) + ".idx");
+        byte[] data = Files.readAllBytes(indexFile);
+        Files.write(indexFile, Arrays.copyOf(data, data.length - 10));
+
+        assertNull(new LogJournal(directory).readIndex(DAY));
+    }
+
+    @Test
+    public void mergesPostingLists() {
+        IntList first = IntArrayList.of(1, 3, 5, 7);
+        IntList second = IntArrayList.of(3, 4, 7, 9);
+
+        assertEquals(IntArrayList.of(3, 7), LogIndex.intersect(first, second));
+        assertEquals(IntArrayList.of(1, 3, 4, 5, 7, 9), LogIndex.union(first, second));
+        assertEquals(first, LogIndex.union(first, IntArrayList.of()));
+    }
+
+    private static LogIndex createIndex(List<ChestAccessLog> logs) {
+        LogIndex index = new LogIndex();
+        for (ChestAccessLog log : logs) {
+            index.add(log);
+        }
+        return index;
+    }
+
+    private static List<ChestAccessLog> createLogs() {
+        List<ChestAccessLog> logs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            logs.add(i % 2 == 0 ? createLog("Steve", STEVE_UUID, i) : createLog("Alex", ALEX_UUID, i));
+        }
+        return logs;
+    }
+
+    private static ChestAccessLog createLog(String player, String playerUuid, int i) {
+        int[] itemIds = {SymbolTable.intern(i % 2 == 0 ? "minecraft:stone" : "minecraft:dirt")};
+        int[] itemCounts = {i % 2 == 0 ? 1 : -1};
+        return new ChestAccessLog(SymbolTable.intern(player), SymbolTable.intern(playerUuid), new BlockPos(i % 10, 64, 0),
+                SymbolTable.intern("minecraft:overworld"), time(i), itemIds, itemCounts, null);
+    }
+
+    private static long time(int second) {
+        return DAY * 86400000L + second * 1000L;
+    }
+
+    private static byte[] write(LogIndex index) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] data) {
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+}
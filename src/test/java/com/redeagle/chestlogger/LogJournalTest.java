@@ -0,0 +1,218 @@
+package com.redeagle.chestlogger;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogJournalTest {
+    private static final long DAY = 20000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void readsBackWhatWasAppended() throws IOException {
+        List<ChestAccessLog> logs = createLogs(0, 10);
+        new LogJournal(directory).append(logs);
+
+        List<ChestAccessLog> read = readDay(new LogJournal(directory));
+        assertEquals(describe(logs), describe(read));
+        assertEquals(logs.get(3).getPlayerUuid(), read.get(3).getPlayerUuid());
+        assertEquals(logs.get(3).getItemDeltaComponentsId(1), read.get(3).getItemDeltaComponentsId(1));
+        assertEquals(0, read.get(3).getItemDeltaComponentsId(0));
+    }
+
+    @Test
+    public void appendsToTheSameSegmentAfterReopening() throws IOException {
+        List<ChestAccessLog> logs = createLogs(0, 5);
+        new LogJournal(directory).append(logs);
+        List<ChestAccessLog> more = createLogs(5, 5);
+        LogJournal journal = new LogJournal(directory);
+        journal.append(more);
+
+        logs.addAll(more);
+        assertEquals(describe(logs), describe(readDay(new LogJournal(directory))));
+        assertEquals(1, journal.getSegmentCount());
+    }
+
+    @Test
+    public void ignoresTornTailAndCutsItOffBeforeAppending() throws IOException {
+        List<ChestAccessLog> logs = createLogs(0, 5);
+        new LogJournal(directory).append(logs);
+        long size = Files.size(getSegment());
+        Files.write(getSegment(), new byte[]{0, 0, 0, 50, 0, 1, 2}, StandardOpenOption.APPEND);
+
+        LogJournal journal = new LogJournal(directory);
+        assertEquals(describe(logs), describe(readDay(journal)));
+        assertEquals(size + 7, Files.size(getSegment())); // Reading alone never changes the file
+
+        List<ChestAccessLog> more = createLogs(5, 2);
+        journal.append(more);
+        logs.addAll(more);
+        assertEquals(describe(logs), describe(readDay(new LogJournal(directory))));
+        assertEquals(describe(logs), describe(mapDay(new LogJournal(directory))));
+    }
+
+    @Test
+    public void stopsAtDamagedRecord() throws IOException {
+        List<ChestAccessLog> logs = createLogs(0, 7);
+        new LogJournal(directory).append(logs);
+        byte[] bytes = Files.readAllBytes(getSegment());
+        // Timestamp and position come first, the player reference after them points past the dictionary now
+        bytes[findRecordFrame(bytes, 2) + 5 + 20] = 0x7F;
+        Files.write(getSegment(), bytes);
+
+        LogJournal journal = new LogJournal(directory);
+        assertEquals(describe(logs.subList(0, 2)), describe(readDay(journal)));
+        assertEquals(describe(logs.subList(0, 2)), describe(mapDay(journal)));
+
+        // The damaged part is kept for inspection, new records go to a fresh part
+        List<ChestAccessLog> more = createLogs(7, 3);
+        journal.append(more);
+        List<ChestAccessLog> expected = new ArrayList<>(logs.subList(0, 2));
+        expected.addAll(more);
+        assertEquals(describe(expected), describe(readDay(journal)));
+        assertEquals(describe(expected), describe(mapDay(journal)));
+
+        // The index stamp counts the segment only up to the damaged record, so after a restart the index goes
+        // stale until a read cut the segment there again; only then do mapped offsets line up with it
+        LogIndex index = new LogIndex();
+        expected.forEach(index::add);
+        ByteArrayOutputStream indexData = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(indexData));
+        journal.writeIndex(DAY, indexData.toByteArray());
+        assertEquals(expected.size(), journal.readIndex(DAY).getRecordCount());
+        LogJournal reopened = new LogJournal(directory);
+        assertNull(reopened.readIndex(DAY));
+        assertEquals(describe(expected), describe(readDay(reopened)));
+        assertEquals(describe(expected), describe(mapDay(reopened)));
+    }
+
+    @Test
+    public void stopsAtInvalidFrameLength() throws IOException {
+        List<ChestAccessLog> logs = createLogs(0, 7);
+        new LogJournal(directory).append(logs);
+        byte[] bytes = Files.readAllBytes(getSegment());
+        ByteBuffer.wrap(bytes).putInt(findRecordFrame(bytes, 4), -5);
+        Files.write(getSegment(), bytes);
+
+        LogJournal journal = new LogJournal(directory);
+        assertEquals(describe(logs.subList(0, 4)), describe(readDay(journal)));
+        assertEquals(describe(logs.subList(0, 4)), describe(mapDay(journal)));
+        assertEquals(bytes.length, Files.size(getSegment()));
+    }
+
+    @Test
+    public void mappedLookupsMatchSequentialRead() throws IOException {
+        // Enough records for several timestamp blocks, so the mapped walk jumps between them
+        LogJournal journal = new LogJournal(directory);
+        journal.append(createLogs(0, 300));
+        journal.append(createLogs(300, 200));
+        List<String> all = describe(readDay(journal));
+
+        MappedLogDay day = journal.mapDay(DAY);
+        IntArrayList offsets = IntArrayList.of(0, 1, 63, 64, 65, 200, 299, 300, 301, 450, 499);
+        List<String> found = new ArrayList<>();
+        day.scan(offsets, (offset, record) -> found.add(offset + " " + record.toLog()));
+        List<String> expected = new ArrayList<>();
+        for (int offset : offsets) {
+            expected.add(offset + " " + all.get(offset));
+        }
+        assertEquals(expected, found);
+
+        // Going back to an earlier offset works on the same mapping
+        List<String> tail = new ArrayList<>();
+        day.scan(420, (offset, record) -> tail.add(record.toLog().toString()));
+        assertEquals(all.subList(420, 500), tail);
+        List<String> head = new ArrayList<>();
+        day.scan(IntArrayList.of(5), (offset, record) -> head.add(record.toLog().toString()));
+        assertEquals(all.subList(5, 6), head);
+    }
+
+    @Test
+    public void dropsWholeDays() throws IOException {
+        LogJournal journal = new LogJournal(directory);
+        journal.append(createLogs(0, 3));
+        List<ChestAccessLog> nextDay = new ArrayList<>();
+        for (ChestAccessLog log : createLogs(0, 3)) {
+            nextDay.add(new ChestAccessLog(log.getPlayerName(), log.getPosition(), log.getDimension(),
+                    log.getTimestamp() + 86400000L, log.getItemsAdded(), log.getItemsRemoved()));
+        }
+        journal.append(nextDay);
+
+        assertEquals(1, journal.dropBefore(DAY + 1));
+        assertEquals(List.of(DAY + 1), new ArrayList<>(journal.getDays()));
+        assertTrue(Files.notExists(getSegment()));
+    }
+
+    private Path getSegment() {
+        return directory.resolve(LocalDate.ofEpochDay(DAY) + ".log");
+    }
+
+    private static List<ChestAccessLog> createLogs(int first, int count) {
+        int player = SymbolTable.intern("Steve");
+        int playerUuid = SymbolTable.intern("8667ba71-b85a-4004-af54-457a9734eed7");
+        int dimension = SymbolTable.intern("minecraft:overworld");
+        int stone = SymbolTable.intern("minecraft:stone");
+        int sword = SymbolTable.intern("minecraft:diamond_sword");
+        int named = ComponentTable.intern("{\"minecraft:custom_name\":\"Excalibur\"}");
+
+        List<ChestAccessLog> logs = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            int[] components = i % 2 == 0 ? new int[]{0, named} : null;
+            logs.add(new ChestAccessLog(player, i % 3 == 0 ? -1 : playerUuid, new BlockPos(i, 64, -i), dimension,
+                    DAY * 86400000L + i * 1000L, new int[]{stone, sword}, new int[]{i + 1, -1}, components));
+        }
+        return logs;
+    }
+
+    private static List<ChestAccessLog> readDay(LogJournal journal) throws IOException {
+        List<ChestAccessLog> logs = new ArrayList<>();
+        journal.readDay(DAY, logs::add);
+        return logs;
+    }
+
+    private static List<ChestAccessLog> mapDay(LogJournal journal) throws IOException {
+        List<ChestAccessLog> logs = new ArrayList<>();
+        journal.mapDay(DAY).scan(0, (offset, record) -> logs.add(record.toLog()));
+        return logs;
+    }
+
+    private static List<String> describe(List<ChestAccessLog> logs) {
+        List<String> lines = new ArrayList<>();
+        for (ChestAccessLog log : logs) {
+            lines.add(log.toString());
+        }
+        return lines;
+    }
+
+    private static int findRecordFrame(byte[] bytes, int record) {
+        // Position of the length prefix of the given record frame, symbol and component frames are skipped
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int position = LogJournal.SEGMENT_HEADER_BYTES;
+        int seen = 0;
+        while (position < bytes.length) {
+            if (bytes[position + 4] == LogJournal.FRAME_RECORD && seen++ == record) {
+                return position;
+            }
+            position += 4 + buffer.getInt(position);
+        }
+        throw new IllegalArgumentException("No record " + record);
+    }
+}